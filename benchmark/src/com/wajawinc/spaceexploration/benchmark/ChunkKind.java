@@ -0,0 +1,61 @@
+package com.wajawinc.spaceexploration.benchmark;
+
+import rajawali.math.Number3D;
+
+// -------------------------------------------------------------------------
+/**
+ * The kinds of chunk that the benchmarks run on, each with a fixed chunk
+ * location for the noise planet and for the sphere planet. Empty and full
+ * chunks show the cost of chunks with no surface, which are most of the chunks
+ * a planet generates, and surface chunks show the cost of the ones that get
+ * a mesh.
+ */
+public enum ChunkKind
+{
+    /**
+     * A chunk above the surface, where every sample is empty.
+     */
+    EMPTY(new Number3D(192, 0, 0), new Number3D(192, 0, 0)),
+    /**
+     * A chunk deep under the surface, where every sample is solid.
+     */
+    FULL(new Number3D(0, 0, 0), new Number3D(0, 0, 0)),
+    /**
+     * A chunk that the surface passes through.
+     */
+    SURFACE(new Number3D(0, 0, -128), new Number3D(-64, 0, 0));
+
+    private final Number3D noiseLocation;
+    private final Number3D sphereLocation;
+
+
+    private ChunkKind(Number3D noiseLocation, Number3D sphereLocation)
+    {
+        this.noiseLocation = noiseLocation;
+        this.sphereLocation = sphereLocation;
+    }
+
+
+    /**
+     * Gets the location of a chunk of this kind on a NoisePlanetGenerator
+     * planet.
+     *
+     * @return the chunk's location relative to the center of the planet.
+     */
+    public Number3D getNoiseLocation()
+    {
+        return noiseLocation;
+    }
+
+
+    /**
+     * Gets the location of a chunk of this kind on a SpherePlanetGenerator
+     * planet.
+     *
+     * @return the chunk's location relative to the center of the planet.
+     */
+    public Number3D getSphereLocation()
+    {
+        return sphereLocation;
+    }
+}
@@ -0,0 +1,89 @@
+package com.wajawinc.spaceexploration.benchmark;
+
+import com.wajawinc.spaceexploration.universe.Chunk;
+import com.wajawinc.spaceexploration.universe.generator.NoisePlanetGenerator;
+import com.wajawinc.spaceexploration.universe.generator.SpherePlanetGenerator;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+// -------------------------------------------------------------------------
+/**
+ * Measures how long the planet generators take to fill one chunk, apron
+ * included.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GeneratorBenchmark
+{
+    @Param
+    private ChunkKind             kind;
+
+    private NoisePlanetGenerator  noiseGenerator;
+    private SpherePlanetGenerator sphereGenerator;
+    private Chunk                 chunk;
+
+
+    /**
+     * Creates the sphere generator and the chunk that the generators fill.
+     */
+    @Setup
+    public void setUp()
+    {
+        sphereGenerator = new SpherePlanetGenerator();
+        chunk = new Chunk(null, kind.getNoiseLocation());
+    }
+
+
+    /**
+     * Creates a new NoisePlanetGenerator for each call, so that its lattice
+     * cache is empty and every call evaluates the whole lattice. Otherwise
+     * repeated calls for the same chunk would read points that earlier calls
+     * left in the cache.
+     */
+    @Setup(Level.Invocation)
+    public void setUpNoiseGenerator()
+    {
+        noiseGenerator = new NoisePlanetGenerator();
+    }
+
+
+    /**
+     * Fills the chunk from a NoisePlanetGenerator.
+     *
+     * @return the chunk.
+     */
+    @Benchmark
+    public Chunk noisePlanet()
+    {
+        noiseGenerator.generateChunk(chunk, kind.getNoiseLocation());
+        return chunk;
+    }
+
+
+    /**
+     * Fills the chunk from a SpherePlanetGenerator.
+     *
+     * @return the chunk.
+     */
+    @Benchmark
+    public Chunk spherePlanet()
+    {
+        sphereGenerator.generateChunk(chunk, kind.getSphereLocation());
+        return chunk;
+    }
+}
@@ -0,0 +1,84 @@
+package com.wajawinc.spaceexploration.benchmark;
+
+import com.wajawinc.spaceexploration.tessellation.EdgeScanMarchingCubes;
+import com.wajawinc.spaceexploration.tessellation.MarchingCubesChunkTessellator;
+import com.wajawinc.spaceexploration.tessellation.MeshData;
+import com.wajawinc.spaceexploration.universe.Chunk;
+import com.wajawinc.spaceexploration.universe.generator.NoisePlanetGenerator;
+import com.wajawinc.spaceexploration.util.DebugLog;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+// -------------------------------------------------------------------------
+/**
+ * Measures how many cells per second Marching Cubes gets through with the
+ * per-case vertex tables, against the edge-scanning loop they replaced. Both
+ * mesh every cell of the same surface chunk with separate vertices and face
+ * normals.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@OperationsPerInvocation(Chunk.SIZE * Chunk.SIZE * Chunk.SIZE)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MarchingCubesCellBenchmark
+{
+    private MarchingCubesChunkTessellator tessellator;
+    private EdgeScanMarchingCubes         edgeScan;
+    private Chunk                         chunk;
+
+
+    /**
+     * Generates the chunk and creates both tessellators.
+     */
+    @Setup
+    public void setUp()
+    {
+        DebugLog.set(DebugLog.SILENT);
+        tessellator = new MarchingCubesChunkTessellator();
+        edgeScan = new EdgeScanMarchingCubes();
+        chunk = new Chunk(null, ChunkKind.SURFACE.getNoiseLocation());
+        new NoisePlanetGenerator().generateChunk(
+            chunk,
+            ChunkKind.SURFACE.getNoiseLocation());
+        // The edge-scanning loop knows nothing of sub-blocks, so have the
+        // tables visit every cell too.
+        chunk.setSurfaceSubBlocks(-1L);
+    }
+
+
+    /**
+     * Tessellates the chunk with the edge-scanning loop.
+     *
+     * @return the mesh.
+     */
+    @Benchmark
+    public MeshData edgeScan()
+    {
+        return edgeScan.tessellate(chunk);
+    }
+
+
+    /**
+     * Tessellates the chunk with the per-case tables.
+     *
+     * @return the mesh.
+     */
+    @Benchmark
+    public MeshData caseTables()
+    {
+        return tessellator.tessellate(chunk);
+    }
+}
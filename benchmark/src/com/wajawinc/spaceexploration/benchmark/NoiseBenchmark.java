@@ -0,0 +1,123 @@
+package com.wajawinc.spaceexploration.benchmark;
+
+import com.wajawinc.spaceexploration.universe.generator.FastNoise;
+import com.wajawinc.spaceexploration.universe.generator.Noise;
+import com.wajawinc.spaceexploration.universe.generator.SimplexNoise;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+// -------------------------------------------------------------------------
+/**
+ * Measures single noise samples, at a fixed set of points spread over a
+ * planet-sized volume. Times are per sample.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class NoiseBenchmark
+{
+    private static final int SAMPLES = 1024;
+    private static final long SEED = 42;
+    /* The seed and scale that NoisePlanetGenerator uses */
+    private static final int NOISE_SEED = 256;
+    private static final float NOISE_SIZE = 256.1353462f;
+
+    private Noise            noise;
+    private SimplexNoise     simplexNoise;
+    private FastNoise        fastNoise;
+    private float[]          points;
+
+
+    /**
+     * Creates the noise and picks the sample points.
+     */
+    @Setup
+    public void setUp()
+    {
+        noise = new Noise(NOISE_SEED, NOISE_SIZE);
+        simplexNoise = new SimplexNoise(NOISE_SEED, NOISE_SIZE);
+        fastNoise = new FastNoise(NOISE_SEED);
+        points = new float[SAMPLES * 3];
+        Random random = new Random(SEED);
+        for (int i = 0; i < points.length; i++)
+        {
+            points[i] = (random.nextFloat() * 2 - 1) * 256;
+        }
+    }
+
+
+    /**
+     * Samples Noise.getNoiseValue at every point.
+     *
+     * @param blackhole
+     *            consumes the samples.
+     */
+    @Benchmark
+    @OperationsPerInvocation(SAMPLES)
+    public void noise(Blackhole blackhole)
+    {
+        for (int i = 0; i < points.length; i += 3)
+        {
+            blackhole.consume(noise.getNoiseValue(
+                points[i],
+                points[i + 1],
+                points[i + 2]));
+        }
+    }
+
+
+    /**
+     * Samples SimplexNoise.getNoiseValue at every point.
+     *
+     * @param blackhole
+     *            consumes the samples.
+     */
+    @Benchmark
+    @OperationsPerInvocation(SAMPLES)
+    public void simplexNoise(Blackhole blackhole)
+    {
+        for (int i = 0; i < points.length; i += 3)
+        {
+            blackhole.consume(simplexNoise.getNoiseValue(
+                points[i],
+                points[i + 1],
+                points[i + 2]));
+        }
+    }
+
+
+    /**
+     * Samples FastNoise.noise at every point, scaled as NoisePlanetGenerator
+     * scales them.
+     *
+     * @param blackhole
+     *            consumes the samples.
+     */
+    @Benchmark
+    @OperationsPerInvocation(SAMPLES)
+    public void fastNoise(Blackhole blackhole)
+    {
+        for (int i = 0; i < points.length; i += 3)
+        {
+            blackhole.consume(fastNoise.noise(
+                points[i] / 121.21254f,
+                points[i + 1] / 121.214543f,
+                points[i + 2] / 121.1256f));
+        }
+    }
+}
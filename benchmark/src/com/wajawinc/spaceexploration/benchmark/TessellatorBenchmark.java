@@ -0,0 +1,71 @@
+package com.wajawinc.spaceexploration.benchmark;
+
+import com.wajawinc.spaceexploration.tessellation.ChunkTessellator;
+import com.wajawinc.spaceexploration.tessellation.MeshData;
+import com.wajawinc.spaceexploration.universe.Chunk;
+import com.wajawinc.spaceexploration.universe.generator.NoisePlanetGenerator;
+import com.wajawinc.spaceexploration.util.DebugLog;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+// -------------------------------------------------------------------------
+/**
+ * Measures how long each kind of tessellator takes to mesh one chunk of a
+ * noise planet. The chunk is generated once, so only tessellation is timed.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TessellatorBenchmark
+{
+    @Param
+    private ChunkKind        kind;
+
+    @Param
+    private TessellatorKind  tessellatorKind;
+
+    private ChunkTessellator tessellator;
+    private Chunk            chunk;
+
+
+    /**
+     * Generates the chunk and creates the tessellator.
+     */
+    @Setup
+    public void setUp()
+    {
+        // Logging every mesh would be timed too, and android.util.Log is not
+        // there on a plain JVM.
+        DebugLog.set(DebugLog.SILENT);
+        tessellator = tessellatorKind.create();
+        chunk = new Chunk(null, kind.getNoiseLocation());
+        new NoisePlanetGenerator().generateChunk(
+            chunk,
+            kind.getNoiseLocation());
+    }
+
+
+    /**
+     * Tessellates the chunk.
+     *
+     * @return the mesh.
+     */
+    @Benchmark
+    public MeshData tessellate()
+    {
+        return tessellator.tessellate(chunk);
+    }
+}
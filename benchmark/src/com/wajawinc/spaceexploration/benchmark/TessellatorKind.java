@@ -0,0 +1,82 @@
+package com.wajawinc.spaceexploration.benchmark;
+
+import com.wajawinc.spaceexploration.tessellation.BlockChunkTessellator;
+import com.wajawinc.spaceexploration.tessellation.ChunkTessellator;
+import com.wajawinc.spaceexploration.tessellation.ColorRamp;
+import com.wajawinc.spaceexploration.tessellation.MarchingCubesChunkTessellator;
+import com.wajawinc.spaceexploration.tessellation.SurfaceNetsChunkTessellator;
+
+// -------------------------------------------------------------------------
+/**
+ * The tessellator configurations that TessellatorBenchmark compares.
+ */
+public enum TessellatorKind
+{
+    /**
+     * Marching Cubes as a Planet uses it by default, with shared vertices and
+     * gradient normals.
+     */
+    PLANET_DEFAULT
+    {
+        @Override
+        public ChunkTessellator create()
+        {
+            return new MarchingCubesChunkTessellator(
+                true,
+                ColorRamp.getDefault(),
+                true);
+        }
+    },
+    /**
+     * Marching Cubes with separate vertices and face normals.
+     */
+    MARCHING_CUBES
+    {
+        @Override
+        public ChunkTessellator create()
+        {
+            return new MarchingCubesChunkTessellator();
+        }
+    },
+    /**
+     * Naive Surface Nets.
+     */
+    SURFACE_NETS
+    {
+        @Override
+        public ChunkTessellator create()
+        {
+            return new SurfaceNetsChunkTessellator();
+        }
+    },
+    /**
+     * One quad per exposed block face.
+     */
+    BLOCKS
+    {
+        @Override
+        public ChunkTessellator create()
+        {
+            return new BlockChunkTessellator();
+        }
+    },
+    /**
+     * Exposed block faces merged into rectangles.
+     */
+    GREEDY_BLOCKS
+    {
+        @Override
+        public ChunkTessellator create()
+        {
+            return new BlockChunkTessellator(true);
+        }
+    };
+
+
+    /**
+     * Creates a tessellator of this kind.
+     *
+     * @return the new ChunkTessellator.
+     */
+    public abstract ChunkTessellator create();
+}
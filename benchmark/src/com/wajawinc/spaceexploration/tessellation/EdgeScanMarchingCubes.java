@@ -0,0 +1,240 @@
+package com.wajawinc.spaceexploration.tessellation;
+
+import com.wajawinc.spaceexploration.universe.Chunk;
+
+// -------------------------------------------------------------------------
+/**
+ * The separate-vertex Marching Cubes loop as it was before the per-case
+ * tables, kept as a baseline for MarchingCubesCellBenchmark. Each cell fills
+ * its 12 edge vertices through an if-chain, and each triangle corner finds
+ * its vertex by scanning EDGE_TABLE for the active edges after it. Colors
+ * come from the same ColorRamp as MarchingCubesChunkTessellator, so that the
+ * vertex lookup is the only difference between the two.
+ */
+public final class EdgeScanMarchingCubes
+{
+    private final ColorRamp colorRamp = ColorRamp.getDefault();
+    private final FloatList vertexList = new FloatList(1024 * 3);
+    private final FloatList colorList  = new FloatList(1024 * 4);
+    private final FloatList normalList = new FloatList(1024 * 3);
+    private final IntList   indexList  = new IntList(1024 * 3);
+    private final float[][] vertexTemp = new float[12][3];
+    private final float[][] normalTemp = new float[12][4];
+    private final float[][] colorTemp  = new float[12][4];
+
+
+    /**
+     * Tessellates every cell of a chunk, whatever its surface sub-blocks.
+     *
+     * @param c
+     *            the chunk to tessellate.
+     * @return the mesh, or null if the chunk has no surface.
+     */
+    public MeshData tessellate(Chunk c)
+    {
+        vertexList.clear();
+        colorList.clear();
+        normalList.clear();
+        indexList.clear();
+        for (int x = 0; x < Chunk.SIZE; x++)
+        {
+            for (int y = 0; y < Chunk.SIZE; y++)
+            {
+                for (int z = 0; z < Chunk.SIZE; z++)
+                {
+                    tessellateCell(c, x, y, z);
+                }
+            }
+        }
+        if (vertexList.size() == 0 || indexList.size() == 0)
+        {
+            return null;
+        }
+        return new MeshData(
+            vertexList.toArray(),
+            normalList.toArray(),
+            null,
+            colorList.toArray(),
+            indexList.toArray());
+    }
+
+
+    private void tessellateCell(Chunk c, int x, int y, int z)
+    {
+        int cubeIndex = getCubeIndex(c, x, y, z);
+        int edgeTableValue = MarchingCubesChunkTessellator.EDGE_TABLE[cubeIndex];
+        if ((edgeTableValue & 1) > 0)
+        {
+            addEdge(c, x, y, z, x + 1, y, z, 0);
+        }
+        if ((edgeTableValue & (1 << 1)) > 0)
+        {
+            addEdge(c, x + 1, y, z, x + 1, y, z + 1, 1);
+        }
+        if ((edgeTableValue & (1 << 2)) > 0)
+        {
+            addEdge(c, x, y, z + 1, x + 1, y, z + 1, 2);
+        }
+        if ((edgeTableValue & (1 << 3)) > 0)
+        {
+            addEdge(c, x, y, z, x, y, z + 1, 3);
+        }
+        if ((edgeTableValue & (1 << 4)) > 0)
+        {
+            addEdge(c, x, y + 1, z, x + 1, y + 1, z, 4);
+        }
+        if ((edgeTableValue & (1 << 5)) > 0)
+        {
+            addEdge(c, x + 1, y + 1, z, x + 1, y + 1, z + 1, 5);
+        }
+        if ((edgeTableValue & (1 << 6)) > 0)
+        {
+            addEdge(c, x, y + 1, z + 1, x + 1, y + 1, z + 1, 6);
+        }
+        if ((edgeTableValue & (1 << 7)) > 0)
+        {
+            addEdge(c, x, y + 1, z, x, y + 1, z + 1, 7);
+        }
+        if ((edgeTableValue & (1 << 8)) > 0)
+        {
+            addEdge(c, x, y, z, x, y + 1, z, 8);
+        }
+        if ((edgeTableValue & (1 << 9)) > 0)
+        {
+            addEdge(c, x + 1, y, z, x + 1, y + 1, z, 9);
+        }
+        if ((edgeTableValue & (1 << 10)) > 0)
+        {
+            addEdge(c, x + 1, y, z + 1, x + 1, y + 1, z + 1, 10);
+        }
+        if ((edgeTableValue & (1 << 11)) > 0)
+        {
+            addEdge(c, x, y, z + 1, x, y + 1, z + 1, 11);
+        }
+        for (int i = 0; i < 12; i++)
+        {
+            if ((edgeTableValue & (1 << i)) == 0)
+            {
+                continue;
+            }
+            vertexList.add(vertexTemp[i][0], vertexTemp[i][1], vertexTemp[i][2]);
+            colorList.add(
+                colorTemp[i][0],
+                colorTemp[i][1],
+                colorTemp[i][2],
+                colorTemp[i][3]);
+            for (int j = 0; j < 4; j++)
+            {
+                normalTemp[i][j] = 0;
+            }
+        }
+        int totalVertices = vertexList.size() / 3;
+        int[] triangles = MarchingCubesChunkTessellator.TRIANGLE_TABLE[cubeIndex];
+        for (int i = 0; i < triangles.length; i++)
+        {
+            int tableIndex = triangles[i];
+            /* Calculate index of vertex */
+            int vertexIndex = totalVertices - 1;
+            for (int j = tableIndex + 1; j < 12; j++)
+            {
+                if ((edgeTableValue & (1 << j)) > 0)
+                {
+                    vertexIndex--;
+                }
+            }
+            indexList.add(vertexIndex);
+            if (i % 3 == 0)
+            {
+                addFaceNormal(tableIndex, triangles[i + 1], triangles[i + 2]);
+            }
+        }
+        for (int i = 0; i < 12; i++)
+        {
+            if ((edgeTableValue & (1 << i)) > 0)
+            {
+                normalList.add(
+                    normalTemp[i][0],
+                    normalTemp[i][1],
+                    normalTemp[i][2]);
+            }
+        }
+    }
+
+
+    /**
+     * Interpolates the vertex and color of one edge into its slot, reading
+     * both ends from the chunk again as the original loop did.
+     */
+    private void addEdge(
+        Chunk c,
+        int x1,
+        int y1,
+        int z1,
+        int x2,
+        int y2,
+        int z2,
+        int edge)
+    {
+        float value1 = c.getValue(x1, y1, z1);
+        float value2 = c.getValue(x2, y2, z2);
+        float interp;
+        if (Math.abs(value1) < 0.0001f || Math.abs(value1 - value2) < 0.0001f)
+        {
+            interp = 0;
+        }
+        else if (Math.abs(value2) < 0.0001f)
+        {
+            interp = 1;
+        }
+        else
+        {
+            interp = (0 - value1) / (value2 - value1);
+        }
+        float[] vertex = vertexTemp[edge];
+        vertex[0] = x1 + interp * (x2 - x1);
+        vertex[1] = y1 + interp * (y2 - y1);
+        vertex[2] = z1 + interp * (z2 - z1);
+        colorRamp.getColor(interp, colorTemp[edge]);
+    }
+
+
+    private void addFaceNormal(int a, int b, int d)
+    {
+        float vX = vertexTemp[b][0] - vertexTemp[a][0];
+        float vY = vertexTemp[b][1] - vertexTemp[a][1];
+        float vZ = vertexTemp[b][2] - vertexTemp[a][2];
+        float wX = vertexTemp[d][0] - vertexTemp[a][0];
+        float wY = vertexTemp[d][1] - vertexTemp[a][1];
+        float wZ = vertexTemp[d][2] - vertexTemp[a][2];
+        float normX = vY * wZ - vZ * wY;
+        float normY = vZ * wX - vX * wZ;
+        float normZ = vX * wY - vY * wX;
+        float length =
+            (float)Math.sqrt(normX * normX + normY * normY + normZ * normZ);
+        normX /= length;
+        normY /= length;
+        normZ /= length;
+        for (int corner : new int[] { a, b, d })
+        {
+            normalTemp[corner][0] += normX;
+            normalTemp[corner][1] += normY;
+            normalTemp[corner][2] += normZ;
+            normalTemp[corner][3]++;
+        }
+    }
+
+
+    private static int getCubeIndex(Chunk c, int x, int y, int z)
+    {
+        int cubeIndex = 0;
+        cubeIndex |= c.getValue(x, y, z) <= 0 ? 1 : 0;
+        cubeIndex |= c.getValue(x + 1, y, z) <= 0 ? 1 << 1 : 0;
+        cubeIndex |= c.getValue(x + 1, y, z + 1) <= 0 ? 1 << 2 : 0;
+        cubeIndex |= c.getValue(x, y, z + 1) <= 0 ? 1 << 3 : 0;
+        cubeIndex |= c.getValue(x, y + 1, z) <= 0 ? 1 << 4 : 0;
+        cubeIndex |= c.getValue(x + 1, y + 1, z) <= 0 ? 1 << 5 : 0;
+        cubeIndex |= c.getValue(x + 1, y + 1, z + 1) <= 0 ? 1 << 6 : 0;
+        cubeIndex |= c.getValue(x, y + 1, z + 1) <= 0 ? 1 << 7 : 0;
+        return cubeIndex;
+    }
+}
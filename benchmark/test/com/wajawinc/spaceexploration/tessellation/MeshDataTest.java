@@ -0,0 +1,72 @@
+package com.wajawinc.spaceexploration.tessellation;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+
+import com.wajawinc.spaceexploration.universe.Chunk;
+import com.wajawinc.spaceexploration.util.DebugLog;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import rajawali.math.Number3D;
+
+// -------------------------------------------------------------------------
+/**
+ * Checks that a MeshData never shares memory with the scratch buffers of the
+ * tessellator that made it, which are reused for the next chunk.
+ */
+public class MeshDataTest
+{
+    /**
+     * Keeps the tessellators from logging through android.util.Log, which is
+     * not there on a plain JVM.
+     */
+    @BeforeClass
+    public static void silenceLog()
+    {
+        DebugLog.set(DebugLog.SILENT);
+    }
+
+
+    /**
+     * A flat plane across a chunk has 2048 triangles, which fills the Marching
+     * Cubes index buffer exactly after it first grows. Meshing another chunk
+     * on the same thread must leave the first mesh as it was.
+     */
+    @Test
+    public void meshSurvivesNextTessellation()
+    {
+        MarchingCubesChunkTessellator tessellator =
+            new MarchingCubesChunkTessellator();
+        MeshData first = tessellator.tessellate(createPlane(10.5f));
+        float[] vertices = first.getVertices().clone();
+        int[] indices = first.getIndices().clone();
+        assertEquals(2048, first.getTriangleCount());
+
+        MeshData second = tessellator.tessellate(createPlane(20.5f));
+        assertNotSame(first.getVertices(), second.getVertices());
+        assertNotSame(first.getIndices(), second.getIndices());
+        assertArrayEquals(vertices, first.getVertices(), 0);
+        assertArrayEquals(indices, first.getIndices());
+    }
+
+
+    /**
+     * Makes a chunk that is solid below a given height and empty above it.
+     */
+    private static Chunk createPlane(float height)
+    {
+        Chunk chunk = new Chunk(null, new Number3D());
+        for (int x = -Chunk.APRON; x <= Chunk.SIZE + Chunk.APRON; x++)
+        {
+            for (int y = -Chunk.APRON; y <= Chunk.SIZE + Chunk.APRON; y++)
+            {
+                for (int z = -Chunk.APRON; z <= Chunk.SIZE + Chunk.APRON; z++)
+                {
+                    chunk.setValue(x, y, z, height - y);
+                }
+            }
+        }
+        return chunk;
+    }
+}
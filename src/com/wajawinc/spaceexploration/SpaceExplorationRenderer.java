@@ -3,8 +3,8 @@ package com.wajawinc.spaceexploration;
 import android.content.Context;
 import android.util.Log;
 import android.view.MotionEvent;
-import com.wajawinc.spaceexploration.universe.Chunk;
 import com.wajawinc.spaceexploration.universe.ChunkGeneratorExecutor;
+import com.wajawinc.spaceexploration.universe.ChunkStreamer;
 import com.wajawinc.spaceexploration.universe.Planet;
 import com.wajawinc.spaceexploration.universe.generator.NoisePlanetGenerator;
 import javax.microedition.khronos.opengles.GL10;
@@ -15,8 +15,14 @@ import rajawali.renderer.RajawaliRenderer;
 public class SpaceExplorationRenderer
     extends RajawaliRenderer
 {
+    /* Radii in chunks of the planet kept loaded around the streaming point */
+    private static final int STREAM_LOAD_RADIUS = 5;
+    private static final int STREAM_UNLOAD_RADIUS = 7;
+
     private ChunkGeneratorExecutor chunkGeneratorExecutor;
 
+    private ChunkStreamer chunkStreamer;
+
     private Planet planet;
 
     private DirectionalLight mLight;
@@ -43,19 +49,22 @@ public class SpaceExplorationRenderer
         addChild(planet);
 
 
-        chunkGeneratorExecutor = new ChunkGeneratorExecutor(this);
-        for (int x = -5; x <= 5; x++)
-            for (int y = -5; y <= 5; y++)
-                for (int z = -5; z <= 5; z++)
-                    chunkGeneratorExecutor.generateChunk(planet, new Number3D(x*Chunk.SIZE, y*Chunk.SIZE, z*Chunk.SIZE));
-
         mCamera.setFarPlane(10000f);
         mCamera.setZ(512f);
+
+        chunkGeneratorExecutor = new ChunkGeneratorExecutor(this);
+        // The camera looks down -z at the planet, so build the side facing it first
+        chunkGeneratorExecutor.setViewpoint(mCamera.getPosition(), new Number3D(0, 0, -1));
+        // The camera looks at the whole planet, so stream around its center
+        chunkStreamer = new ChunkStreamer(chunkGeneratorExecutor, STREAM_LOAD_RADIUS, STREAM_UNLOAD_RADIUS);
+        chunkStreamer.update(planet, planet.getPosition());
     }
 
     @Override
     public void onDrawFrame(GL10 glUnused)
     {
+        // Chunks finished by the workers join the scene between frames
+        planet.attachChunks();
         super.onDrawFrame(glUnused);
 
         long time = System.currentTimeMillis();
@@ -65,6 +74,7 @@ public class SpaceExplorationRenderer
         }
         lastFrameTime = time;
         //planet.update(this.getFrameRate());
+        chunkStreamer.update(planet, planet.getPosition());
         planet.setRotY(planet.getRotY()+1);
     }
 
@@ -4,12 +4,6 @@ import com.wajawinc.spaceexploration.universe.Chunk;
 
 public class BlockChunkTessellator implements ChunkTessellator
 {
-    private float[] vertices;
-    private float[] uv;
-    private float[] normals;
-    private float[] colors;
-    private int[] index;
-
     private final int TOP_FACE = 1, BOTTOM_FACE = 1 << 1, LEFT_FACE = 1 << 2,
         RIGHT_FACE = 1 << 3, FRONT_FACE = 1 << 4, BACK_FACE = 1 << 5;
     private final int TOP_FACE_INDEX = 0, BOTTOM_FACE_INDEX = 1,
@@ -31,152 +25,50 @@ public class BlockChunkTessellator implements ChunkTessellator
         {0, 1, 0}, {0, -1, 0}, {-1, 0, 0}, {1, 0, 0}, {0, 0, 1}, {0, 0, -1}
     };
     private static final short[]     FACE_INDICES = { 0, 1, 2, 0, 2, 3 };
+    /* The axis each face is perpendicular to */
+    private static final int[]       FACE_AXIS    = { 1, 1, 0, 0, 2, 2 };
+
+    private final boolean greedy;
+
+    /* Scratch state for each thread that tessellates with this object */
+    private final ThreadLocal<Extraction> extractions =
+        new ThreadLocal<Extraction>() {
+            @Override
+            protected Extraction initialValue()
+            {
+                return new Extraction();
+            }
+        };
+
+    /* The result of the last call to tessellateChunk */
+    private MeshData mesh;
 
     public BlockChunkTessellator()
     {
+        this(false);
+    }
+
+    /**
+     * Instantiates a new BlockChunkTessellator.
+     *
+     * @param greedy
+     *            if true, neighbouring exposed faces that point the same way
+     *            are merged into as few rectangles as possible instead of
+     *            drawing one quad per face.
+     */
+    public BlockChunkTessellator(boolean greedy)
+    {
+        this.greedy = greedy;
+    }
+
+    public MeshData tessellate(Chunk c)
+    {
+        return extractions.get().tessellate(c);
     }
 
     public void tessellateChunk(Chunk c)
     {
-        int faces = getNumberOfFaces(c);
-        /* 3 values per vertex, 4 vertices per face */
-        vertices = new float[faces * 3 * 4];
-        normals = new float[faces *3 * 4];
-        /* 4 color components per vertex, 4 vertices per face */
-        colors = new float[faces * 4 * 4];
-        /* 2 triangles per face, 3 index values per triangle */
-        index = new int[faces * 2 * 3];
-        /* 2 UV coordinates per vertex, 4 vertices per face */
-        uv = new float[faces * 4 * 2];
-
-        int vertexIndex = 0;
-        int uvIndex = 0;
-        int indicesIndex = 0;
-        int colorsIndex = 0;
-        for (int x = 0; x < Chunk.SIZE; x++)
-        {
-            for (int y = 0; y < Chunk.SIZE; y++)
-            {
-                for (int z = 0; z < Chunk.SIZE; z++)
-                {
-                    float value = c.getValue(x, y, z);
-                    if (value < 0)
-                    {
-                        continue;
-                    }
-                    int face = getFaces(c, x, y, z);
-                    float[] color = {(float) Math.random(), (float) Math.random(), (float) Math.random(), 1};
-                    if ((face & TOP_FACE) != 0)
-                    {
-                        addVertices(
-                            vertices,
-                            vertexIndex,
-                            TOP_FACE_INDEX,
-                            x,
-                            y,
-                            z);
-                        addNormals(normals, vertexIndex, TOP_FACE_INDEX);
-                        addIndices(index, indicesIndex, vertexIndex);
-                        addUVs(uv, uvIndex, value, TOP_FACE);
-                        addColor(colors, colorsIndex, color);
-                        vertexIndex += 12;
-                        indicesIndex += 6;
-                        uvIndex += 8;
-                        colorsIndex += 16;
-                    }
-                    if ((face & BOTTOM_FACE) != 0)
-                    {
-                        addVertices(
-                            vertices,
-                            vertexIndex,
-                            BOTTOM_FACE_INDEX,
-                            x,
-                            y,
-                            z);
-                        addNormals(normals, vertexIndex, BOTTOM_FACE_INDEX);
-                        addIndices(index, indicesIndex, vertexIndex);
-                        addUVs(uv, uvIndex, value, BOTTOM_FACE);
-                        addColor(colors, colorsIndex, color);
-                        vertexIndex += 12;
-                        indicesIndex += 6;
-                        uvIndex += 8;
-                        colorsIndex += 16;
-                    }
-                    if ((face & LEFT_FACE) != 0)
-                    {
-                        addVertices(
-                            vertices,
-                            vertexIndex,
-                            LEFT_FACE_INDEX,
-                            x,
-                            y,
-                            z);
-                        addNormals(normals, vertexIndex, LEFT_FACE_INDEX);
-                        addIndices(index, indicesIndex, vertexIndex);
-                        addUVs(uv, uvIndex, value, LEFT_FACE);
-                        addColor(colors, colorsIndex, color);
-                        vertexIndex += 12;
-                        indicesIndex += 6;
-                        uvIndex += 8;
-                        colorsIndex += 16;
-                    }
-                    if ((face & RIGHT_FACE) != 0)
-                    {
-                        addVertices(
-                            vertices,
-                            vertexIndex,
-                            RIGHT_FACE_INDEX,
-                            x,
-                            y,
-                            z);
-                        addNormals(normals, vertexIndex, RIGHT_FACE_INDEX);
-                        addIndices(index, indicesIndex, vertexIndex);
-                        addUVs(uv, uvIndex, value, RIGHT_FACE);
-                        addColor(colors, colorsIndex, color);
-                        vertexIndex += 12;
-                        indicesIndex += 6;
-                        uvIndex += 8;
-                        colorsIndex += 16;
-                    }
-                    if ((face & BACK_FACE) != 0)
-                    {
-                        addVertices(
-                            vertices,
-                            vertexIndex,
-                            BACK_FACE_INDEX,
-                            x,
-                            y,
-                            z);
-                        addIndices(index, indicesIndex, vertexIndex);
-                        addNormals(normals, vertexIndex, BACK_FACE_INDEX);
-                        addUVs(uv, uvIndex, value, BACK_FACE);
-                        addColor(colors, colorsIndex, color);
-                        vertexIndex += 12;
-                        indicesIndex += 6;
-                        uvIndex += 8;
-                        colorsIndex += 16;
-                    }
-                    if ((face & FRONT_FACE) != 0)
-                    {
-                        addVertices(
-                            vertices,
-                            vertexIndex,
-                            FRONT_FACE_INDEX,
-                            x,
-                            y,
-                            z);
-                        addNormals(normals, vertexIndex, FRONT_FACE_INDEX);
-                        addIndices(index, indicesIndex, vertexIndex);
-                        addUVs(uv, uvIndex, value, FRONT_FACE);
-                        addColor(colors, colorsIndex, color);
-                        vertexIndex += 12;
-                        indicesIndex += 6;
-                        uvIndex += 8;
-                        colorsIndex += 16;
-                    }
-                }
-            }
-        }
+        mesh = tessellate(c);
     }
 
     private void addVertices(
@@ -236,104 +128,472 @@ public class BlockChunkTessellator implements ChunkTessellator
     }
 
 
-    private int getNumberOfFaces(Chunk c)
+    public float[] getVertices()
     {
-        int faces = 0;
-        for (int x = 0; x < Chunk.SIZE; x++)
+        return mesh == null ? null : mesh.getVertices();
+    }
+
+    public float[] getTextureCoords()
+    {
+        return mesh == null ? null : mesh.getTextureCoords();
+    }
+
+    public float[] getColors()
+    {
+        return mesh == null ? null : mesh.getColors();
+    }
+
+    public float[] getNormals()
+    {
+        return mesh == null ? null : mesh.getNormals();
+    }
+
+    public int[] getIndices()
+    {
+        return mesh == null ? null : mesh.getIndices();
+    }
+
+    // ----------------------------------------------------------
+    /**
+     * The scratch buffers used to tessellate one chunk at a time. Each thread
+     * gets its own, so the tessellator itself holds no per-chunk state.
+     */
+    private class Extraction
+    {
+        /*
+         * Bit z of columns[x * SIZE + y] is set if the block at (x, y, z) is
+         * solid. faceColumns holds the same for each face direction, with a bit
+         * set only where that face of the block is exposed. Accessed by
+         * [face index][x * SIZE + y]. This relies on Chunk.SIZE being 32.
+         */
+        private int[]   columns     = new int[Chunk.SIZE * Chunk.SIZE];
+        private int[][] faceColumns = new int[6][Chunk.SIZE * Chunk.SIZE];
+
+        /* Scratch state for greedy meshing */
+        private FloatList vertexList;
+        private FloatList uvList;
+        private FloatList normalList;
+        private FloatList colorList;
+        private IntList   indexList;
+        private boolean[] maskSet;
+
+        MeshData tessellate(Chunk c)
         {
-            for (int y = 0; y < Chunk.SIZE; y++)
+            buildFaceColumns(c);
+            if (greedy)
+            {
+                return tessellateChunkGreedy();
+            }
+            int faces = getNumberOfFaces();
+            if (faces == 0)
             {
-                for (int z = 0; z < Chunk.SIZE; z++)
+                return null;
+            }
+            /* 3 values per vertex, 4 vertices per face */
+            float[] vertices = new float[faces * 3 * 4];
+            float[] normals = new float[faces *3 * 4];
+            /* 4 color components per vertex, 4 vertices per face */
+            float[] colors = new float[faces * 4 * 4];
+            /* 2 triangles per face, 3 index values per triangle */
+            int[] index = new int[faces * 2 * 3];
+            /* 2 UV coordinates per vertex, 4 vertices per face */
+            float[] uv = new float[faces * 4 * 2];
+
+            int vertexIndex = 0;
+            int uvIndex = 0;
+            int indicesIndex = 0;
+            int colorsIndex = 0;
+            for (int x = 0; x < Chunk.SIZE; x++)
+            {
+                for (int y = 0; y < Chunk.SIZE; y++)
                 {
-                    if (c.getValue(x, y, z) == 0)
-                    {
-                        continue;
-                    }
-                    if (x == 0 || c.getValue(x - 1, y, z) == 0)
+                    int column = x * Chunk.SIZE + y;
+                    int exposed = getExposedBlocks(column);
+                    while (exposed != 0)
                     {
-                        faces++;
+                        int z = Integer.numberOfTrailingZeros(exposed);
+                        exposed &= exposed - 1;
+                        float value = c.getValue(x, y, z);
+                        int face = getFaces(column, z);
+                        float[] color = {(float) Math.random(), (float) Math.random(), (float) Math.random(), 1};
+                        if ((face & TOP_FACE) != 0)
+                        {
+                            addVertices(
+                                vertices,
+                                vertexIndex,
+                                TOP_FACE_INDEX,
+                                x,
+                                y,
+                                z);
+                            addNormals(normals, vertexIndex, TOP_FACE_INDEX);
+                            addIndices(index, indicesIndex, vertexIndex);
+                            addUVs(uv, uvIndex, value, TOP_FACE);
+                            addColor(colors, colorsIndex, color);
+                            vertexIndex += 12;
+                            indicesIndex += 6;
+                            uvIndex += 8;
+                            colorsIndex += 16;
+                        }
+                        if ((face & BOTTOM_FACE) != 0)
+                        {
+                            addVertices(
+                                vertices,
+                                vertexIndex,
+                                BOTTOM_FACE_INDEX,
+                                x,
+                                y,
+                                z);
+                            addNormals(normals, vertexIndex, BOTTOM_FACE_INDEX);
+                            addIndices(index, indicesIndex, vertexIndex);
+                            addUVs(uv, uvIndex, value, BOTTOM_FACE);
+                            addColor(colors, colorsIndex, color);
+                            vertexIndex += 12;
+                            indicesIndex += 6;
+                            uvIndex += 8;
+                            colorsIndex += 16;
+                        }
+                        if ((face & LEFT_FACE) != 0)
+                        {
+                            addVertices(
+                                vertices,
+                                vertexIndex,
+                                LEFT_FACE_INDEX,
+                                x,
+                                y,
+                                z);
+                            addNormals(normals, vertexIndex, LEFT_FACE_INDEX);
+                            addIndices(index, indicesIndex, vertexIndex);
+                            addUVs(uv, uvIndex, value, LEFT_FACE);
+                            addColor(colors, colorsIndex, color);
+                            vertexIndex += 12;
+                            indicesIndex += 6;
+                            uvIndex += 8;
+                            colorsIndex += 16;
+                        }
+                        if ((face & RIGHT_FACE) != 0)
+                        {
+                            addVertices(
+                                vertices,
+                                vertexIndex,
+                                RIGHT_FACE_INDEX,
+                                x,
+                                y,
+                                z);
+                            addNormals(normals, vertexIndex, RIGHT_FACE_INDEX);
+                            addIndices(index, indicesIndex, vertexIndex);
+                            addUVs(uv, uvIndex, value, RIGHT_FACE);
+                            addColor(colors, colorsIndex, color);
+                            vertexIndex += 12;
+                            indicesIndex += 6;
+                            uvIndex += 8;
+                            colorsIndex += 16;
+                        }
+                        if ((face & BACK_FACE) != 0)
+                        {
+                            addVertices(
+                                vertices,
+                                vertexIndex,
+                                BACK_FACE_INDEX,
+                                x,
+                                y,
+                                z);
+                            addIndices(index, indicesIndex, vertexIndex);
+                            addNormals(normals, vertexIndex, BACK_FACE_INDEX);
+                            addUVs(uv, uvIndex, value, BACK_FACE);
+                            addColor(colors, colorsIndex, color);
+                            vertexIndex += 12;
+                            indicesIndex += 6;
+                            uvIndex += 8;
+                            colorsIndex += 16;
+                        }
+                        if ((face & FRONT_FACE) != 0)
+                        {
+                            addVertices(
+                                vertices,
+                                vertexIndex,
+                                FRONT_FACE_INDEX,
+                                x,
+                                y,
+                                z);
+                            addNormals(normals, vertexIndex, FRONT_FACE_INDEX);
+                            addIndices(index, indicesIndex, vertexIndex);
+                            addUVs(uv, uvIndex, value, FRONT_FACE);
+                            addColor(colors, colorsIndex, color);
+                            vertexIndex += 12;
+                            indicesIndex += 6;
+                            uvIndex += 8;
+                            colorsIndex += 16;
+                        }
                     }
-                    if (x == Chunk.SIZE - 1 || c.getValue(x + 1, y, z) == 0)
-                    {
-                        faces++;
-                    }
-                    if (y == 0 || c.getValue(x, y - 1, z) == 0)
-                    {
-                        faces++;
-                    }
-                    if (y == Chunk.SIZE - 1 || c.getValue(x, y + 1, z) == 0)
-                    {
-                        faces++;
-                    }
-                    if (z == 0 || c.getValue(x, y, z - 1) == 0)
+                }
+            }
+            return new MeshData(vertices, normals, uv, colors, index);
+        }
+
+        /**
+         * Builds the mesh one slice at a time for each face direction. The
+         * exposed faces in a slice are put into a mask, which is then covered
+         * with maximal rectangles: each rectangle is grown along u while there
+         * are faces, then along v while the next row has every face. Faces in
+         * one direction get the same normal and per block texture coordinates
+         * whatever the block's value, so nothing else has to match.
+         */
+        private MeshData tessellateChunkGreedy()
+        {
+            if (vertexList == null)
+            {
+                vertexList = new FloatList(1024 * 3);
+                uvList = new FloatList(1024 * 2);
+                normalList = new FloatList(1024 * 3);
+                colorList = new FloatList(1024 * 4);
+                indexList = new IntList(1024 * 3 / 2);
+                maskSet = new boolean[Chunk.SIZE * Chunk.SIZE];
+            }
+            vertexList.clear();
+            uvList.clear();
+            normalList.clear();
+            colorList.clear();
+            indexList.clear();
+            int[] pos = new int[3];
+            int[] min = new int[3];
+            int[] max = new int[3];
+            for (int faceIndex = 0; faceIndex < 6; faceIndex++)
+            {
+                int axis = FACE_AXIS[faceIndex];
+                int uAxis = (axis + 1) % 3;
+                int vAxis = (axis + 2) % 3;
+                for (int d = 0; d < Chunk.SIZE; d++)
+                {
+                    pos[axis] = d;
+                    for (int v = 0; v < Chunk.SIZE; v++)
                     {
-                        faces++;
+                        pos[vAxis] = v;
+                        for (int u = 0; u < Chunk.SIZE; u++)
+                        {
+                            pos[uAxis] = u;
+                            maskSet[v * Chunk.SIZE + u] = hasFace(pos, faceIndex);
+                        }
                     }
-                    if (z == Chunk.SIZE - 1 || c.getValue(x, y, z + 1)== 0)
+                    min[axis] = d;
+                    max[axis] = d;
+                    for (int v = 0; v < Chunk.SIZE; v++)
                     {
-                        faces++;
+                        for (int u = 0; u < Chunk.SIZE;)
+                        {
+                            int m = v * Chunk.SIZE + u;
+                            if (!maskSet[m])
+                            {
+                                u++;
+                                continue;
+                            }
+                            int width = 1;
+                            while (u + width < Chunk.SIZE
+                                && maskSet[m + width])
+                            {
+                                width++;
+                            }
+                            int height = 1;
+                            rows: while (v + height < Chunk.SIZE)
+                            {
+                                for (int k = 0; k < width; k++)
+                                {
+                                    int next = m + height * Chunk.SIZE + k;
+                                    if (!maskSet[next])
+                                    {
+                                        break rows;
+                                    }
+                                }
+                                height++;
+                            }
+                            for (int j = 0; j < height; j++)
+                            {
+                                for (int k = 0; k < width; k++)
+                                {
+                                    maskSet[m + j * Chunk.SIZE + k] = false;
+                                }
+                            }
+                            min[uAxis] = u;
+                            max[uAxis] = u + width - 1;
+                            min[vAxis] = v;
+                            max[vAxis] = v + height - 1;
+                            addQuad(faceIndex, min, max);
+                            u += width;
+                        }
                     }
                 }
             }
+            if (indexList.size() == 0)
+            {
+                return null;
+            }
+            return new MeshData(
+                vertexList.toArray(),
+                normalList.toArray(),
+                uvList.toArray(),
+                colorList.toArray(),
+                indexList.toArray());
         }
-        return faces;
-    }
-
 
-    private int getFaces(Chunk c, int x, int y, int z)
-    {
-        int face = 0;
-        /* Set the bits for each face that should be drawn */
-        if (x == 0 || c.getValue(x - 1, y, z) == 0)
-        {
-            face |= LEFT_FACE;
-        }
-        if (x == Chunk.SIZE - 1 || c.getValue(x + 1, y, z) == 0)
-        {
-            face |= RIGHT_FACE;
-        }
-        if (y == 0 || c.getValue(x, y - 1, z) == 0)
+        /**
+         * Checks whether the block at pos has the given face exposed.
+         */
+        private boolean hasFace(int[] pos, int faceIndex)
         {
-            face |= BOTTOM_FACE;
+            int column = pos[0] * Chunk.SIZE + pos[1];
+            return ((faceColumns[faceIndex][column] >>> pos[2]) & 1) != 0;
         }
-        if (y == Chunk.SIZE - 1 || c.getValue(x, y + 1, z) == 0)
+
+        /**
+         * Adds a quad covering the given face of every block from min to max
+         * (inclusive). The quad's texture coordinates repeat once per block.
+         */
+        private void addQuad(int faceIndex, int[] min, int[] max)
         {
-            face |= TOP_FACE;
+            float[] faceVerts = FACE_VERTS[faceIndex];
+            int firstVertex = vertexList.size() / 3;
+            /* u runs along the axis between the first two corners, v the next two */
+            int uAxis = 0;
+            int vAxis = 0;
+            for (int k = 0; k < 3; k++)
+            {
+                if (faceVerts[3 + k] != faceVerts[k])
+                {
+                    uAxis = k;
+                }
+                if (faceVerts[6 + k] != faceVerts[3 + k])
+                {
+                    vAxis = k;
+                }
+            }
+            for (int i = 0; i < 4; i++)
+            {
+                for (int k = 0; k < 3; k++)
+                {
+                    float offset = faceVerts[i * 3 + k];
+                    vertexList.add((offset < 0 ? min[k] : max[k]) + offset);
+                }
+                uvList.add(faceVerts[i * 3 + uAxis] == faceVerts[uAxis] ? 0
+                    : max[uAxis] - min[uAxis] + 1);
+                uvList.add(faceVerts[i * 3 + vAxis] == faceVerts[vAxis] ? 0
+                    : max[vAxis] - min[vAxis] + 1);
+                normalList.add(
+                    FACE_NORMALS[faceIndex][0],
+                    FACE_NORMALS[faceIndex][1],
+                    FACE_NORMALS[faceIndex][2]);
+            }
+            float[] color = {(float) Math.random(), (float) Math.random(), (float) Math.random(), 1};
+            for (int i = 0; i < 4; i++)
+            {
+                colorList.add(color[0], color[1], color[2], color[3]);
+            }
+            for (int i = 0; i < FACE_INDICES.length; i++)
+            {
+                indexList.add(FACE_INDICES[i] + firstVertex);
+            }
         }
-        if (z == 0 || c.getValue(x, y, z - 1) == 0)
+
+        /**
+         * Packs the solid blocks of the chunk into columns, then finds the
+         * exposed faces in all six directions a whole column at a time. A block
+         * is solid when its value is positive, and a face is exposed when the
+         * block next to it is not solid or lies outside the chunk.
+         */
+        private void buildFaceColumns(Chunk c)
         {
-            face |= FRONT_FACE;
+            for (int x = 0; x < Chunk.SIZE; x++)
+            {
+                for (int y = 0; y < Chunk.SIZE; y++)
+                {
+                    int column = 0;
+                    for (int z = 0; z < Chunk.SIZE; z++)
+                    {
+                        if (c.getValue(x, y, z) > 0)
+                        {
+                            column |= 1 << z;
+                        }
+                    }
+                    columns[x * Chunk.SIZE + y] = column;
+                }
+            }
+            for (int x = 0; x < Chunk.SIZE; x++)
+            {
+                for (int y = 0; y < Chunk.SIZE; y++)
+                {
+                    int i = x * Chunk.SIZE + y;
+                    int column = columns[i];
+                    int left = x > 0 ? columns[i - Chunk.SIZE] : 0;
+                    int right = x < Chunk.SIZE - 1 ? columns[i + Chunk.SIZE] : 0;
+                    int bottom = y > 0 ? columns[i - 1] : 0;
+                    int top = y < Chunk.SIZE - 1 ? columns[i + 1] : 0;
+                    faceColumns[LEFT_FACE_INDEX][i] = column & ~left;
+                    faceColumns[RIGHT_FACE_INDEX][i] = column & ~right;
+                    faceColumns[BOTTOM_FACE_INDEX][i] = column & ~bottom;
+                    faceColumns[TOP_FACE_INDEX][i] = column & ~top;
+                    /* Bit z of column << 1 is the block at z - 1 */
+                    faceColumns[FRONT_FACE_INDEX][i] = column & ~(column << 1);
+                    faceColumns[BACK_FACE_INDEX][i] = column & ~(column >>> 1);
+                }
+            }
         }
-        if (z == Chunk.SIZE - 1 || c.getValue(x, y, z + 1) == 0)
+
+
+        private int getNumberOfFaces()
         {
-            face |= BACK_FACE;
+            int faces = 0;
+            for (int f = 0; f < 6; f++)
+            {
+                for (int i = 0; i < faceColumns[f].length; i++)
+                {
+                    faces += Integer.bitCount(faceColumns[f][i]);
+                }
+            }
+            return faces;
         }
-        return face;
-    }
 
-    public float[] getVertices()
-    {
-        return vertices;
-    }
 
-    public float[] getTextureCoords()
-    {
-        return uv;
-    }
-
-    public float[] getColors()
-    {
-        return colors;
-    }
+        /**
+         * Gets a bit set of the blocks in a column that have any face exposed.
+         */
+        private int getExposedBlocks(int column)
+        {
+            int exposed = 0;
+            for (int f = 0; f < 6; f++)
+            {
+                exposed |= faceColumns[f][column];
+            }
+            return exposed;
+        }
 
-    public float[] getNormals()
-    {
-        return normals;
-    }
 
-    public int[] getIndices()
-    {
-        return index;
+        private int getFaces(int column, int z)
+        {
+            int face = 0;
+            /* Set the bits for each face that should be drawn */
+            if (((faceColumns[LEFT_FACE_INDEX][column] >>> z) & 1) != 0)
+            {
+                face |= LEFT_FACE;
+            }
+            if (((faceColumns[RIGHT_FACE_INDEX][column] >>> z) & 1) != 0)
+            {
+                face |= RIGHT_FACE;
+            }
+            if (((faceColumns[BOTTOM_FACE_INDEX][column] >>> z) & 1) != 0)
+            {
+                face |= BOTTOM_FACE;
+            }
+            if (((faceColumns[TOP_FACE_INDEX][column] >>> z) & 1) != 0)
+            {
+                face |= TOP_FACE;
+            }
+            if (((faceColumns[FRONT_FACE_INDEX][column] >>> z) & 1) != 0)
+            {
+                face |= FRONT_FACE;
+            }
+            if (((faceColumns[BACK_FACE_INDEX][column] >>> z) & 1) != 0)
+            {
+                face |= BACK_FACE;
+            }
+            return face;
+        }
     }
-
 }
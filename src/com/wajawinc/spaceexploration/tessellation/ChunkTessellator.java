@@ -4,6 +4,22 @@ import com.wajawinc.spaceexploration.universe.Chunk;
 
 public interface ChunkTessellator
 {
+    /**
+     * Generates the mesh for a chunk. Implementations keep any scratch
+     * buffers per thread, so one tessellator can be shared by every worker
+     * thread and called concurrently.
+     *
+     * @param c
+     *            the chunk to tessellate.
+     * @return the mesh, or null if the chunk has no surface.
+     */
+    public MeshData tessellate(Chunk c);
+
+    /*
+     * The older stateful API: tessellateChunk stores its result in the
+     * tessellator to be read back with the getters below. It is not safe to
+     * share a tessellator between threads when using these.
+     */
     public void tessellateChunk(Chunk c);
     public float[] getVertices();
     public float[] getTextureCoords();
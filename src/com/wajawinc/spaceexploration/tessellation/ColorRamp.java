@@ -0,0 +1,236 @@
+package com.wajawinc.spaceexploration.tessellation;
+
+// -------------------------------------------------------------------------
+/**
+ * A precomputed table of RGBA colors, indexed by how far along a cell edge a
+ * vertex lies. Tessellators color each vertex by quantizing its
+ * interpolation factor into this table, so coloring a vertex does no math
+ * beyond a multiply and allocates nothing. Each planet can have its own ramp.
+ * Colors are unpacked here rather than with android.graphics.Color, so ramps
+ * can be built on a plain JVM.
+ */
+public class ColorRamp
+{
+    /**
+     * The number of entries in the ramps made by the constructor.
+     */
+    public static final int  DEFAULT_SIZE = 256;
+
+    private static ColorRamp defaultRamp;
+
+    private final float[]    table;
+    private final int        size;
+
+
+    /**
+     * Instantiates a new ColorRamp that blends linearly between evenly spaced
+     * color stops, with DEFAULT_SIZE entries.
+     *
+     * @param colors
+     *            at least one ARGB color, the first for an interpolation
+     *            factor of 0 and the last for 1.
+     */
+    public ColorRamp(int... colors)
+    {
+        this(DEFAULT_SIZE);
+        setStops(colors);
+    }
+
+
+    private ColorRamp(int size)
+    {
+        this.size = Math.max(size, 2);
+        table = new float[this.size * 4];
+    }
+
+
+    /**
+     * Creates a ColorRamp that blends linearly between evenly spaced color
+     * stops.
+     *
+     * @param size
+     *            the number of entries in the table.
+     * @param colors
+     *            at least one ARGB color, the first for an interpolation
+     *            factor of 0 and the last for 1.
+     * @return the new ColorRamp.
+     */
+    public static ColorRamp fromStops(int size, int[] colors)
+    {
+        ColorRamp ramp = new ColorRamp(size);
+        ramp.setStops(colors);
+        return ramp;
+    }
+
+
+    /**
+     * Fills the table by blending between evenly spaced color stops.
+     */
+    private void setStops(int[] colors)
+    {
+        if (colors == null || colors.length == 0)
+        {
+            throw new IllegalArgumentException(
+                "A ColorRamp needs at least one color");
+        }
+        for (int i = 0; i < size; i++)
+        {
+            float position = (float)i / (size - 1) * (colors.length - 1);
+            int stop = Math.min((int)position, colors.length - 1);
+            int next = Math.min(stop + 1, colors.length - 1);
+            float t = position - stop;
+            setEntry(
+                i,
+                lerp(red(colors[stop]), red(colors[next]), t),
+                lerp(green(colors[stop]), green(colors[next]), t),
+                lerp(blue(colors[stop]), blue(colors[next]), t),
+                lerp(alpha(colors[stop]), alpha(colors[next]), t));
+        }
+    }
+
+
+    /**
+     * Gets the ramp used when a planet does not set its own. It sweeps the
+     * hue around the color wheel and back as the vertex moves along the edge.
+     *
+     * @return the default ColorRamp.
+     */
+    public static synchronized ColorRamp getDefault()
+    {
+        if (defaultRamp == null)
+        {
+            defaultRamp = new ColorRamp(DEFAULT_SIZE);
+            for (int i = 0; i < DEFAULT_SIZE; i++)
+            {
+                float interp = (float)i / (DEFAULT_SIZE - 1);
+                interp = (float)Math.cos(interp * Math.PI * 2) * .5f + .5f;
+                int argb = hsvToColor(interp * 360.0f, .5f + interp * .5f, 1);
+                defaultRamp.setEntry(
+                    i,
+                    red(argb),
+                    green(argb),
+                    blue(argb),
+                    255);
+            }
+        }
+        return defaultRamp;
+    }
+
+
+    /**
+     * Looks up the color for an interpolation factor.
+     *
+     * @param t
+     *            how far along the edge the vertex is, from 0 to 1. Values
+     *            outside that range are clamped.
+     * @param color
+     *            the array that the RGBA components are copied into.
+     */
+    public void getColor(float t, float[] color)
+    {
+        int i = (int)(t * (size - 1) + .5f);
+        if (i < 0)
+        {
+            i = 0;
+        }
+        else if (i >= size)
+        {
+            i = size - 1;
+        }
+        i *= 4;
+        color[0] = table[i];
+        color[1] = table[i + 1];
+        color[2] = table[i + 2];
+        color[3] = table[i + 3];
+    }
+
+
+    private void setEntry(int i, float red, float green, float blue, float alpha)
+    {
+        table[i * 4] = red / 255.0f;
+        table[i * 4 + 1] = green / 255.0f;
+        table[i * 4 + 2] = blue / 255.0f;
+        table[i * 4 + 3] = alpha / 255.0f;
+    }
+
+
+    private static float lerp(float a, float b, float t)
+    {
+        return a + t * (b - a);
+    }
+
+
+    /**
+     * Converts a color from HSV to opaque ARGB, as android.graphics.Color's
+     * HSVToColor does.
+     */
+    private static int hsvToColor(float hue, float saturation, float value)
+    {
+        float sector = hue < 0 || hue >= 360 ? 0 : hue / 60;
+        int w = (int)sector;
+        float f = sector - w;
+        float p = value * (1 - saturation);
+        float q = value * (1 - saturation * f);
+        float t = value * (1 - saturation * (1 - f));
+        float r, g, b;
+        switch (w)
+        {
+            case 0:
+                r = value;
+                g = t;
+                b = p;
+                break;
+            case 1:
+                r = q;
+                g = value;
+                b = p;
+                break;
+            case 2:
+                r = p;
+                g = value;
+                b = t;
+                break;
+            case 3:
+                r = p;
+                g = q;
+                b = value;
+                break;
+            case 4:
+                r = t;
+                g = p;
+                b = value;
+                break;
+            default:
+                r = value;
+                g = p;
+                b = q;
+                break;
+        }
+        return 0xFF000000 | Math.round(r * 255) << 16
+            | Math.round(g * 255) << 8 | Math.round(b * 255);
+    }
+
+
+    private static int alpha(int argb)
+    {
+        return argb >>> 24;
+    }
+
+
+    private static int red(int argb)
+    {
+        return argb >> 16 & 0xFF;
+    }
+
+
+    private static int green(int argb)
+    {
+        return argb >> 8 & 0xFF;
+    }
+
+
+    private static int blue(int argb)
+    {
+        return argb & 0xFF;
+    }
+}
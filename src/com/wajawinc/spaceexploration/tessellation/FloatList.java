@@ -0,0 +1,141 @@
+package com.wajawinc.spaceexploration.tessellation;
+
+import java.util.Arrays;
+
+// -------------------------------------------------------------------------
+/**
+ * A growable list of primitive floats. Tessellators keep one of these for
+ * each vertex attribute and reuse it from chunk to chunk, so once it has grown
+ * to fit a typical chunk no further allocation happens while tessellating.
+ */
+public class FloatList
+{
+    private float[] data;
+    private int     size;
+
+
+    /**
+     * Instantiates a new, empty FloatList.
+     *
+     * @param capacity
+     *            the number of floats to allocate room for up front.
+     */
+    public FloatList(int capacity)
+    {
+        data = new float[Math.max(capacity, 1)];
+    }
+
+
+    public void add(float value)
+    {
+        if (size == data.length)
+        {
+            grow(size + 1);
+        }
+        data[size++] = value;
+    }
+
+
+    public void add(float a, float b, float c)
+    {
+        if (size + 3 > data.length)
+        {
+            grow(size + 3);
+        }
+        data[size] = a;
+        data[size + 1] = b;
+        data[size + 2] = c;
+        size += 3;
+    }
+
+
+    public void add(float a, float b, float c, float d)
+    {
+        if (size + 4 > data.length)
+        {
+            grow(size + 4);
+        }
+        data[size] = a;
+        data[size + 1] = b;
+        data[size + 2] = c;
+        data[size + 3] = d;
+        size += 4;
+    }
+
+
+    /**
+     * Appends a range of an array to the list.
+     *
+     * @param values
+     *            the array to copy from.
+     * @param offset
+     *            the index of the first value to copy.
+     * @param length
+     *            the number of values to copy.
+     */
+    public void add(float[] values, int offset, int length)
+    {
+        if (size + length > data.length)
+        {
+            grow(size + length);
+        }
+        System.arraycopy(values, offset, data, size, length);
+        size += length;
+    }
+
+
+    public float get(int i)
+    {
+        return data[i];
+    }
+
+
+    public void set(int i, float value)
+    {
+        data[i] = value;
+    }
+
+
+    public int size()
+    {
+        return size;
+    }
+
+
+    /**
+     * Empties the list without releasing its storage.
+     */
+    public void clear()
+    {
+        size = 0;
+    }
+
+
+    /**
+     * Gets the backing array. Only the first size() values are meaningful,
+     * and the array is replaced whenever the list grows.
+     *
+     * @return the backing array.
+     */
+    public float[] array()
+    {
+        return data;
+    }
+
+
+    /**
+     * Copies the contents of the list into an array of exactly size() floats.
+     *
+     * @return the trimmed copy.
+     */
+    public float[] toArray()
+    {
+        return Arrays.copyOf(data, size);
+    }
+
+
+    private void grow(int minCapacity)
+    {
+        data = Arrays.copyOf(data, Math.max(minCapacity, data.length * 2));
+    }
+}
@@ -0,0 +1,30 @@
+package com.wajawinc.spaceexploration.tessellation;
+
+import com.wajawinc.spaceexploration.universe.Chunk;
+
+/**
+ * A ChunkTessellator that can update a mesh after a local edit, redoing only
+ * the sub-blocks of the chunk that changed (see Chunk.SUB_BLOCK_SIZE) and
+ * copying the rest from the previous mesh. Meshes made this way keep the
+ * triangles of each sub-block together, and record where each one starts.
+ */
+public interface IncrementalTessellator
+    extends ChunkTessellator
+{
+    /**
+     * Generates the mesh for a chunk, reusing the parts of a previous mesh
+     * whose sub-blocks are not dirty. Like tessellate(Chunk), this is safe to
+     * call from several threads at once.
+     *
+     * @param c
+     *            the chunk to tessellate.
+     * @param previous
+     *            the last mesh made for the chunk, or null. If it was not
+     *            made by this method, every sub-block is redone.
+     * @param dirtySubBlocks
+     *            one bit per sub-block, as returned by
+     *            Chunk.getDirtySubBlocks.
+     * @return the mesh, or null if the chunk has no surface.
+     */
+    public MeshData tessellate(Chunk c, MeshData previous, long dirtySubBlocks);
+}
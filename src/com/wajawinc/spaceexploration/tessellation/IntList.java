@@ -0,0 +1,106 @@
+package com.wajawinc.spaceexploration.tessellation;
+
+import java.util.Arrays;
+
+// -------------------------------------------------------------------------
+/**
+ * A growable list of primitive ints, used by the tessellators for triangle
+ * indices. Like FloatList it is reused from chunk to chunk, so once it has
+ * grown to fit a typical chunk no further allocation happens.
+ */
+public class IntList
+{
+    private int[] data;
+    private int   size;
+
+
+    /**
+     * Instantiates a new, empty IntList.
+     *
+     * @param capacity
+     *            the number of ints to allocate room for up front.
+     */
+    public IntList(int capacity)
+    {
+        data = new int[Math.max(capacity, 1)];
+    }
+
+
+    public void add(int value)
+    {
+        if (size == data.length)
+        {
+            grow(size + 1);
+        }
+        data[size++] = value;
+    }
+
+
+    public void add(int a, int b, int c)
+    {
+        if (size + 3 > data.length)
+        {
+            grow(size + 3);
+        }
+        data[size] = a;
+        data[size + 1] = b;
+        data[size + 2] = c;
+        size += 3;
+    }
+
+
+    public int get(int i)
+    {
+        return data[i];
+    }
+
+
+    public void set(int i, int value)
+    {
+        data[i] = value;
+    }
+
+
+    public int size()
+    {
+        return size;
+    }
+
+
+    /**
+     * Empties the list without releasing its storage.
+     */
+    public void clear()
+    {
+        size = 0;
+    }
+
+
+    /**
+     * Gets the backing array. Only the first size() values are meaningful,
+     * and the array is replaced whenever the list grows.
+     *
+     * @return the backing array.
+     */
+    public int[] array()
+    {
+        return data;
+    }
+
+
+    /**
+     * Copies the contents of the list into an array of exactly size() ints.
+     *
+     * @return the trimmed copy.
+     */
+    public int[] toArray()
+    {
+        return Arrays.copyOf(data, size);
+    }
+
+
+    private void grow(int minCapacity)
+    {
+        data = Arrays.copyOf(data, Math.max(minCapacity, data.length * 2));
+    }
+}
@@ -0,0 +1,31 @@
+package com.wajawinc.spaceexploration.tessellation;
+
+import com.wajawinc.spaceexploration.universe.Chunk;
+
+/**
+ * A ChunkTessellator that can also mesh a chunk at a reduced resolution.
+ * At level of detail n the chunk is sampled every 2^n voxels, so each level
+ * has about a quarter of the triangles of the one before. Meshes made this
+ * way carry skirts along the chunk's faces so that neighbouring chunks at
+ * different levels meet without cracks.
+ */
+public interface LevelOfDetailTessellator
+    extends ChunkTessellator
+{
+    /**
+     * The coarsest level of detail, sampling every 8th voxel.
+     */
+    public static final int MAX_LEVEL_OF_DETAIL = 3;
+
+    /**
+     * Generates the mesh for a chunk at a given level of detail. Like
+     * tessellate(Chunk), this is safe to call from several threads at once.
+     *
+     * @param c
+     *            the chunk to tessellate.
+     * @param levelOfDetail
+     *            0 for full resolution, up to MAX_LEVEL_OF_DETAIL.
+     * @return the mesh, or null if the chunk has no surface.
+     */
+    public MeshData tessellate(Chunk c, int levelOfDetail);
+}
@@ -1,8 +1,8 @@
 package com.wajawinc.spaceexploration.tessellation;
 
-import android.graphics.Color;
-import android.util.Log;
 import com.wajawinc.spaceexploration.universe.Chunk;
+import com.wajawinc.spaceexploration.util.DebugLog;
+import java.util.Arrays;
 
 // -------------------------------------------------------------------------
 /**
@@ -10,9 +10,14 @@ import com.wajawinc.spaceexploration.universe.Chunk;
  * original C++ implementation. Generates a smooth surface from a scalar field.
  */
 public class MarchingCubesChunkTessellator
-    implements ChunkTessellator
+    implements LevelOfDetailTessellator, IncrementalTessellator
 {
-    private static final int[]   EDGE_TABLE     = { 0x0, 0x109, 0x203, 0x30a,
+    /*
+     * Paul Bourke's tables: the edges cut by the surface, and the triangles
+     * between them, for each cube index. Package-private so that the
+     * benchmarks can run the edge-scanning loop that CASE_TRIANGLES replaced.
+     */
+    static final int[]           EDGE_TABLE     = { 0x0, 0x109, 0x203, 0x30a,
         0x406, 0x50f, 0x605, 0x70c, 0x80c, 0x905, 0xa0f, 0xb06, 0xc0a, 0xd03,
         0xe09, 0xf00, 0x190, 0x99, 0x393, 0x29a, 0x596, 0x49f, 0x795, 0x69c,
         0x99c, 0x895, 0xb9f, 0xa96, 0xd9a, 0xc93, 0xf99, 0xe90, 0x230, 0x339,
@@ -40,7 +45,7 @@ public class MarchingCubesChunkTessellator
         0xb06, 0xa0f, 0x905, 0x80c, 0x70c, 0x605, 0x50f, 0x406, 0x30a, 0x203,
         0x109, 0x0                             };
 
-    private static final int[][] TRIANGLE_TABLE = { {}, { 0, 8, 3 },
+    static final int[][]         TRIANGLE_TABLE = { {}, { 0, 8, 3 },
         { 0, 1, 9 }, { 1, 8, 3, 9, 8, 1 }, { 1, 2, 10 }, { 0, 8, 3, 1, 2, 10 },
         { 9, 2, 10, 0, 2, 9 }, { 2, 8, 3, 2, 10, 8, 10, 9, 8 }, { 3, 11, 2 },
         { 0, 11, 2, 8, 11, 0 }, { 1, 9, 0, 2, 3, 11 },
@@ -218,343 +223,192 @@ public class MarchingCubesChunkTessellator
         { 2, 3, 8, 2, 8, 10, 0, 1, 8, 1, 10, 8 }, { 1, 10, 2 },
         { 1, 3, 8, 9, 1, 8 }, { 0, 9, 1 }, { 0, 3, 8 }, {} };
 
-    private float[]              vertices;
-    private float[]              colors;
-    private float[]              normals;
-    private int[]                index;
+    /*
+     * The offset of each of the 8 cube corners from the cell's (x, y, z)
+     * corner, numbered the same way as the bits of the cube index.
+     */
+    private static final int[][] CORNER_OFFSET  = { { 0, 0, 0 }, { 1, 0, 0 },
+        { 1, 0, 1 }, { 0, 0, 1 }, { 0, 1, 0 }, { 1, 1, 0 }, { 1, 1, 1 },
+        { 0, 1, 1 }                            };
 
-    private int                  numVertices;
-    private int                  numIndices;
+    /*
+     * The two corners joined by each of the 12 cube edges. The first corner is
+     * always the one closer to the origin, so an edge shared by several cells
+     * is interpolated the same way from each of them.
+     */
+    private static final int[][] EDGE_CORNERS   = { { 0, 1 }, { 1, 2 },
+        { 3, 2 }, { 0, 3 }, { 4, 5 }, { 5, 6 }, { 7, 6 }, { 4, 7 }, { 0, 4 },
+        { 1, 5 }, { 2, 6 }, { 3, 7 }           };
 
+    /*
+     * The axis (0 = x, 1 = y, 2 = z) that each of the 12 cube edges runs along
+     * from its first corner.
+     */
+    private static final int[]   EDGE_AXIS      = { 0, 2, 0, 2, 0, 2, 0, 2, 1,
+        1, 1, 1                                };
 
-    public MarchingCubesChunkTessellator()
-    {
-    }
+    /*
+     * Tables generated from EDGE_TABLE and TRIANGLE_TABLE when the class is
+     * loaded, accessed by [cube index]. CASE_EDGES lists the active edges of
+     * the case in ascending order, and an edge's position in that list is the
+     * local slot of its vertex. CASE_EDGE_SLOT maps each of the 12 edges to
+     * its slot (-1 if the edge is not active), and CASE_TRIANGLES is
+     * TRIANGLE_TABLE with every edge already replaced by its slot.
+     */
+    private static final int[][] CASE_EDGES     = new int[256][];
+    private static final int[][] CASE_EDGE_SLOT = new int[256][12];
+    private static final int[][] CASE_TRIANGLES = new int[256][];
 
-
-    public void tessellateChunk(Chunk c)
+    static
     {
-        calculateNumberOfVerticesAndIndices(c);
-        if (numVertices == 0 || numIndices == 0)
-            return;
-        Log.d("Tessellator", "Verts: " + numVertices + " Index: " + numIndices);
-        index = new int[numIndices];
-        vertices = new float[numVertices * 3];
-        colors = new float[numVertices * 4];
-        normals = new float[numVertices * 3];
-        int verticesIndex = 0;
-        int indicesIndex = 0;
-        int colorsIndex = 0;
-        int normalsIndex = 0;
-        float vertexTemp[][] = new float[12][3];
-        float normalTemp[][] = new float[12][4];
-        float colorTemp[][] = new float[12][4];
-        for (int x = 0; x < Chunk.SIZE; x++)
+        for (int cubeIndex = 0; cubeIndex < 256; cubeIndex++)
         {
-            for (int y = 0; y < Chunk.SIZE; y++)
+            int edgeTableValue = EDGE_TABLE[cubeIndex];
+            int[] edges = new int[Integer.bitCount(edgeTableValue)];
+            int slot = 0;
+            for (int i = 0; i < 12; i++)
             {
-                for (int z = 0; z < Chunk.SIZE; z++)
+                if ((edgeTableValue & (1 << i)) != 0)
                 {
-                    int cubeIndex = getCubeIndex(c, x, y, z);
-                    int edgeTableValue = EDGE_TABLE[cubeIndex];
-                    if ((edgeTableValue & 1) > 0)
-                    {
-                        vertexInterpolate(
-                            x,
-                            y,
-                            z,
-                            c.getValue(x, y, z),
-                            x + 1,
-                            y,
-                            z,
-                            c.getValue(x + 1, y, z),
-                            vertexTemp[0]);
-                        colorInterpolate(
-                            c.getValue(x, y, z),
-                            c.getValue(x + 1, y, z),
-                            colorTemp[0]);
-                    }
-                    if ((edgeTableValue & (1 << 1)) > 0)
-                    {
-                        vertexInterpolate(
-                            x + 1,
-                            y,
-                            z,
-                            c.getValue(x + 1, y, z),
-                            x + 1,
-                            y,
-                            z + 1,
-                            c.getValue(x + 1, y, z + 1),
-                            vertexTemp[1]);
-                        colorInterpolate(
-                            c.getValue(x + 1, y, z),
-                            c.getValue(x + 1, y, z + 1),
-                            colorTemp[1]);
-                    }
-                    if ((edgeTableValue & (1 << 2)) > 0)
-                    {
-                        vertexInterpolate(
-                            x + 1,
-                            y,
-                            z + 1,
-                            c.getValue(x + 1, y, z + 1),
-                            x,
-                            y,
-                            z + 1,
-                            c.getValue(x, y, z + 1),
-                            vertexTemp[2]);
-                        colorInterpolate(
-                            c.getValue(x + 1, y, z + 1),
-                            c.getValue(x, y, z + 1),
-                            colorTemp[2]);
-                    }
-                    if ((edgeTableValue & (1 << 3)) > 0)
-                    {
-                        vertexInterpolate(
-                            x,
-                            y,
-                            z + 1,
-                            c.getValue(x, y, z + 1),
-                            x,
-                            y,
-                            z,
-                            c.getValue(x, y, z),
-                            vertexTemp[3]);
-                        colorInterpolate(
-                            c.getValue(x, y, z + 1),
-                            c.getValue(x, y, z),
-                            colorTemp[3]);
-                    }
-                    if ((edgeTableValue & (1 << 4)) > 0)
-                    {
-                        vertexInterpolate(
-                            x,
-                            y + 1,
-                            z,
-                            c.getValue(x, y + 1, z),
-                            x + 1,
-                            y + 1,
-                            z,
-                            c.getValue(x + 1, y + 1, z),
-                            vertexTemp[4]);
-                        colorInterpolate(
-                            c.getValue(x, y + 1, z),
-                            c.getValue(x + 1, y + 1, z),
-                            colorTemp[4]);
-                    }
-                    if ((edgeTableValue & (1 << 5)) > 0)
-                    {
-                        vertexInterpolate(
-                            x + 1,
-                            y + 1,
-                            z,
-                            c.getValue(x + 1, y + 1, z),
-                            x + 1,
-                            y + 1,
-                            z + 1,
-                            c.getValue(x + 1, y + 1, z + 1),
-                            vertexTemp[5]);
-                        colorInterpolate(
-                            c.getValue(x + 1, y + 1, z),
-                            c.getValue(x + 1, y + 1, z + 1),
-                            colorTemp[5]);
-                    }
-                    if ((edgeTableValue & (1 << 6)) > 0)
-                    {
-                        vertexInterpolate(
-                            x + 1,
-                            y + 1,
-                            z + 1,
-                            c.getValue(x + 1, y + 1, z + 1),
-                            x,
-                            y + 1,
-                            z + 1,
-                            c.getValue(x, y + 1, z + 1),
-                            vertexTemp[6]);
-                        colorInterpolate(
-                            c.getValue(x + 1, y + 1, z + 1),
-                            c.getValue(x, y + 1, z + 1),
-                            colorTemp[6]);
-                    }
-                    if ((edgeTableValue & (1 << 7)) > 0)
-                    {
-                        vertexInterpolate(
-                            x,
-                            y + 1,
-                            z + 1,
-                            c.getValue(x, y + 1, z + 1),
-                            x,
-                            y + 1,
-                            z,
-                            c.getValue(x, y + 1, z),
-                            vertexTemp[7]);
-                        colorInterpolate(
-                            c.getValue(x, y + 1, z + 1),
-                            c.getValue(x, y + 1, z),
-                            colorTemp[7]);
-                    }
-                    if ((edgeTableValue & (1 << 8)) > 0)
-                    {
-                        vertexInterpolate(
-                            x,
-                            y,
-                            z,
-                            c.getValue(x, y, z),
-                            x,
-                            y + 1,
-                            z,
-                            c.getValue(x, y + 1, z),
-                            vertexTemp[8]);
-                        colorInterpolate(
-                            c.getValue(x, y, z),
-                            c.getValue(x, y + 1, z),
-                            colorTemp[8]);
-                    }
-                    if ((edgeTableValue & (1 << 9)) > 0)
-                    {
-                        vertexInterpolate(
-                            x + 1,
-                            y,
-                            z,
-                            c.getValue(x + 1, y, z),
-                            x + 1,
-                            y + 1,
-                            z,
-                            c.getValue(x + 1, y + 1, z),
-                            vertexTemp[9]);
-                        colorInterpolate(
-                            c.getValue(x + 1, y, z),
-                            c.getValue(x + 1, y + 1, z),
-                            colorTemp[9]);
-                    }
-                    if ((edgeTableValue & (1 << 10)) > 0)
-                    {
-                        vertexInterpolate(
-                            x + 1,
-                            y,
-                            z + 1,
-                            c.getValue(x + 1, y, z + 1),
-                            x + 1,
-                            y + 1,
-                            z + 1,
-                            c.getValue(x + 1, y + 1, z + 1),
-                            vertexTemp[10]);
-                        colorInterpolate(
-                            c.getValue(x + 1, y, z + 1),
-                            c.getValue(x + 1, y + 1, z + 1),
-                            colorTemp[10]);
-                    }
-                    if ((edgeTableValue & (1 << 11)) > 0)
-                    {
-                        vertexInterpolate(
-                            x,
-                            y,
-                            z + 1,
-                            c.getValue(x, y, z + 1),
-                            x,
-                            y + 1,
-                            z + 1,
-                            c.getValue(x, y + 1, z + 1),
-                            vertexTemp[11]);
-                        colorInterpolate(
-                            c.getValue(x, y, z + 1),
-                            c.getValue(x, y + 1, z + 1),
-                            colorTemp[11]);
-                    }
-                    for (int i = 0; i < 12; i++)
-                    {
-                        if ((edgeTableValue & (1 << i)) == 0)
-                        {
-                            continue;
-                        }
-                        for (int j = 0; j < 3; j++)
-                        {
-                            vertices[verticesIndex++] = vertexTemp[i][j];
-                            colors[colorsIndex++] = colorTemp[i][j];
-                        }
-                        colors[colorsIndex++] = colorTemp[i][3];
-                        for (int j = 0; j < 4; j++)
-                        {
-                            normalTemp[i][j] = 0;
-                        }
-                    }
-                    int totalVertices = verticesIndex / 3;
-                    for (int i = 0; i < TRIANGLE_TABLE[cubeIndex].length; i++)
-                    {
-                        int tableIndex = TRIANGLE_TABLE[cubeIndex][i];
-                        /* Calculate index of vertex */
-                        int vertexIndex = totalVertices - 1;
-                        for (int j = tableIndex + 1; j < 12; j++)
-                        {
-                            if ((edgeTableValue & (1 << j)) > 0)
-                            {
-                                vertexIndex--;
-                            }
-                        }
-                        index[indicesIndex++] = vertexIndex;
-                        if (i % 3 == 0)
-                        {
-
-                            int nextTableIndex =
-                                TRIANGLE_TABLE[cubeIndex][i + 1];
-                            int thirdTableIndex =
-                                TRIANGLE_TABLE[cubeIndex][i + 2];
-                            float vX =
-                                vertexTemp[nextTableIndex][0]
-                                    - vertexTemp[tableIndex][0];
-                            float vY =
-                                vertexTemp[nextTableIndex][1]
-                                    - vertexTemp[tableIndex][1];
-                            float vZ =
-                                vertexTemp[nextTableIndex][2]
-                                    - vertexTemp[tableIndex][2];
-                            float wX =
-                                vertexTemp[thirdTableIndex][0]
-                                    - vertexTemp[tableIndex][0];
-                            float wY =
-                                vertexTemp[thirdTableIndex][1]
-                                    - vertexTemp[tableIndex][1];
-                            float wZ =
-                                vertexTemp[thirdTableIndex][2]
-                                    - vertexTemp[tableIndex][2];
-                            float normX = vY * wZ - vZ * wY;
-                            float normY = vZ * wX - vX * wZ;
-                            float normZ = vX * wY - vY * wX;
-                            float length =
-                                (float)Math.sqrt(normX * normX + normY * normY
-                                    + normZ * normZ);
-                            normX /= length;
-                            normY /= length;
-                            normZ /= length;
-                            normalTemp[tableIndex][0] += normX;
-                            normalTemp[tableIndex][1] += normY;
-                            normalTemp[tableIndex][2] += normZ;
-                            normalTemp[tableIndex][3]++;
-                            normalTemp[nextTableIndex][0] += normX;
-                            normalTemp[nextTableIndex][1] += normY;
-                            normalTemp[nextTableIndex][2] += normZ;
-                            normalTemp[nextTableIndex][3]++;
-                            normalTemp[thirdTableIndex][0] += normX;
-                            normalTemp[thirdTableIndex][1] += normY;
-                            normalTemp[thirdTableIndex][2] += normZ;
-                            normalTemp[thirdTableIndex][3]++;
-                        }
-                    }
-                    for (int i = 0; i < 12; i++)
-                    {
-                        if ((edgeTableValue & (1 << i)) > 0)
-                        {
-                            for (int j = 0; j < 3; j++)
-                            {
-                                normals[normalsIndex++] = normalTemp[i][j];
-                            }
-                        }
-                    }
+                    CASE_EDGE_SLOT[cubeIndex][i] = slot;
+                    edges[slot++] = i;
+                }
+                else
+                {
+                    CASE_EDGE_SLOT[cubeIndex][i] = -1;
                 }
             }
+            CASE_EDGES[cubeIndex] = edges;
+            int[] triangles = new int[TRIANGLE_TABLE[cubeIndex].length];
+            for (int i = 0; i < triangles.length; i++)
+            {
+                triangles[i] =
+                    CASE_EDGE_SLOT[cubeIndex][TRIANGLE_TABLE[cubeIndex][i]];
+            }
+            CASE_TRIANGLES[cubeIndex] = triangles;
         }
     }
 
+    private static final int     SLICE_SIZE     = (Chunk.SIZE + 1)
+                                                    * (Chunk.SIZE + 1) * 3;
+
+    /* The number of sub-blocks that a chunk is split into */
+    private static final int     SUB_BLOCKS              =
+        (Chunk.SIZE / Chunk.SUB_BLOCK_SIZE)
+            * (Chunk.SIZE / Chunk.SUB_BLOCK_SIZE)
+            * (Chunk.SIZE / Chunk.SUB_BLOCK_SIZE);
+
+    /* Initial room for this many vertices in the reusable buffers */
+    private static final int     INITIAL_VERTEX_CAPACITY = 1024;
+
+    private final boolean        sharedVertices;
+    private final ColorRamp      colorRamp;
+    private final boolean        gradientNormals;
+
+    /* Scratch state for each thread that tessellates with this object */
+    private final ThreadLocal<Extraction> extractions =
+        new ThreadLocal<Extraction>() {
+            @Override
+            protected Extraction initialValue()
+            {
+                return new Extraction();
+            }
+        };
+
+    /* The result of the last call to tessellateChunk */
+    private MeshData             mesh;
+
+
+    public MarchingCubesChunkTessellator()
+    {
+        this(false);
+    }
+
+
+    /**
+     * Instantiates a new MarchingCubesChunkTessellator.
+     *
+     * @param sharedVertices
+     *            if true, cells that share an edge also share the vertex on
+     *            that edge, so each surface point is stored only once and the
+     *            normals are smoothed across cells.
+     */
+    public MarchingCubesChunkTessellator(boolean sharedVertices)
+    {
+        this(sharedVertices, ColorRamp.getDefault());
+    }
+
+
+    /**
+     * Instantiates a new MarchingCubesChunkTessellator.
+     *
+     * @param sharedVertices
+     *            if true, cells that share an edge also share the vertex on
+     *            that edge.
+     * @param colorRamp
+     *            the colors given to vertices, looked up by how far along
+     *            their edge they lie.
+     */
+    public MarchingCubesChunkTessellator(
+        boolean sharedVertices,
+        ColorRamp colorRamp)
+    {
+        this(sharedVertices, colorRamp, false);
+    }
+
+
+    /**
+     * Instantiates a new MarchingCubesChunkTessellator.
+     *
+     * @param sharedVertices
+     *            if true, cells that share an edge also share the vertex on
+     *            that edge.
+     * @param colorRamp
+     *            the colors given to vertices.
+     * @param gradientNormals
+     *            if true, normals are taken from the gradient of the voxel
+     *            data at each vertex instead of from the triangles around it.
+     *            Shading is then smooth across cells and across chunks.
+     */
+    public MarchingCubesChunkTessellator(
+        boolean sharedVertices,
+        ColorRamp colorRamp,
+        boolean gradientNormals)
+    {
+        this.sharedVertices = sharedVertices;
+        this.colorRamp = colorRamp;
+        this.gradientNormals = gradientNormals;
+    }
+
+
+    public MeshData tessellate(Chunk c)
+    {
+        return extractions.get().tessellate(c, 0, false);
+    }
+
+
+    public MeshData tessellate(Chunk c, MeshData previous, long dirtySubBlocks)
+    {
+        return extractions.get().tessellate(c, previous, dirtySubBlocks);
+    }
+
+
+    public MeshData tessellate(Chunk c, int levelOfDetail)
+    {
+        if (levelOfDetail < 0 || levelOfDetail > MAX_LEVEL_OF_DETAIL)
+        {
+            throw new IllegalArgumentException("Level of detail "
+                + levelOfDetail + " is out of range");
+        }
+        return extractions.get().tessellate(c, levelOfDetail, true);
+    }
+
+
+    public void tessellateChunk(Chunk c)
+    {
+        mesh = tessellate(c);
+    }
+
 
     private static void vertexInterpolate(
         int x1,
@@ -595,50 +449,25 @@ public class MarchingCubesChunkTessellator
     }
 
 
-    private static void setColor(float hue, float sat, float val, float[] color)
+    /**
+     * Gets how far along an edge the surface crosses it, with the same
+     * rounding as vertexInterpolate.
+     */
+    private static float getInterpolation(float value1, float value2)
     {
-        int argb = Color.HSVToColor(new float[] { hue, sat, val });
-        color[0] = Color.red(argb) / 255.0f;
-        color[1] = Color.green(argb) / 255.0f;
-        color[2] = Color.blue(argb) / 255.0f;
-        color[3] = 1;
-    }
-
-
-    private static void colorInterpolate(
-        float value1,
-        float value2,
-        float[] color)
-    {
-        float hue1 = 0.0f;
-        float sat1 = .5f;
-        float val1 = 1;
-        float hue2 = 360.0f;
-        float sat2 = 1f;
-        float val2 = 1;
         if (abs(value1) < 0.0001f)
         {
-            setColor(hue1, sat1, val1, color);
-            return;
+            return 0;
         }
         if (abs(value2) < 0.0001f)
         {
-            setColor(hue2, sat2, val2, color);
-            return;
+            return 1;
         }
         if (abs(value1 - value2) < 0.0001f)
         {
-            setColor(hue1, sat1, val1, color);
-            return;
+            return 0;
         }
-        float interp = (0 - value1) / (value2 - value1);
-        interp = (float) Math.cos(interp*Math.PI*2)*.5f + .5f;
-        Log.d("interp", interp+"");
-        setColor(
-            hue1 + interp * (hue2 - hue1),
-            sat1 + interp * (sat2 - sat1),
-            val1 + interp * (val2 - val1),
-            color);
+        return (0 - value1) / (value2 - value1);
     }
 
 
@@ -648,98 +477,699 @@ public class MarchingCubesChunkTessellator
     }
 
 
-    private void calculateNumberOfVerticesAndIndices(Chunk c)
+    /**
+     * Reads the values at the 8 corners of the cell at (x, y, z) that is step
+     * voxels wide.
+     *
+     * @return the cube index, with a bit set for each corner inside the
+     *         surface.
+     */
+    private static int getCorners(
+        Chunk c,
+        int x,
+        int y,
+        int z,
+        int step,
+        float[] corners)
     {
-        numVertices = 0;
-        numIndices = 0;
-        for (int x = 0; x < Chunk.SIZE; x++)
+        corners[0] = c.getValue(x, y, z);
+        corners[1] = c.getValue(x + step, y, z);
+        corners[2] = c.getValue(x + step, y, z + step);
+        corners[3] = c.getValue(x, y, z + step);
+        corners[4] = c.getValue(x, y + step, z);
+        corners[5] = c.getValue(x + step, y + step, z);
+        corners[6] = c.getValue(x + step, y + step, z + step);
+        corners[7] = c.getValue(x, y + step, z + step);
+        int cubeIndex = 0;
+        for (int i = 0; i < 8; i++)
+        {
+            if (corners[i] <= 0)
+            {
+                cubeIndex |= 1 << i;
+            }
+        }
+        return cubeIndex;
+    }
+
+
+    public float[] getVertices()
+    {
+        return mesh == null ? null : mesh.getVertices();
+    }
+
+
+    public float[] getTextureCoords()
+    {
+        return null;
+    }
+
+
+    public float[] getColors()
+    {
+        return mesh == null ? null : mesh.getColors();
+    }
+
+
+    public float[] getNormals()
+    {
+        return mesh == null ? null : mesh.getNormals();
+    }
+
+
+    public int[] getIndices()
+    {
+        return mesh == null ? null : mesh.getIndices();
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * The scratch buffers used to tessellate one chunk at a time. Each thread
+     * gets its own, so the tessellator itself holds no per-chunk state.
+     */
+    private class Extraction
+    {
+        /*
+         * Buffers that the vertex data is written into while tessellating.
+         * They are kept between chunks and copied into the MeshData when
+         * done, as the MeshData must not change when they are reused.
+         */
+        private FloatList vertexList   =
+            new FloatList(INITIAL_VERTEX_CAPACITY * 3);
+        private FloatList colorList    =
+            new FloatList(INITIAL_VERTEX_CAPACITY * 4);
+        private FloatList normalList   =
+            new FloatList(INITIAL_VERTEX_CAPACITY * 3);
+        private IntList   indexList    =
+            new IntList(INITIAL_VERTEX_CAPACITY * 3);
+
+        /*
+         * Vertex IDs of the edges starting on the x and x + 1 grid slices,
+         * indexed by ((y * (SIZE + 1)) + z) * 3 + axis. -1 means no vertex
+         * yet.
+         */
+        private int[]     lowerSlice;
+        private int[]     upperSlice;
+        private float[]   vertexTemp   = new float[3];
+        private float[]   colorTemp    = new float[4];
+        private float[]   normalTemp   = new float[3];
+        private float[]   cornerTemp   = new float[8];
+        private float[]   slotNormals  = new float[12 * 3];
+        private int[]     cellVertices = new int[12];
+
+        /* The width of a cell in voxels at the current level of detail */
+        private int       step;
+
+        /* The chunk's sub-blocks that may hold the surface */
+        private long      surfaceSubBlocks;
+
+
+        MeshData tessellate(Chunk c, int levelOfDetail, boolean skirts)
         {
-            for (int y = 0; y < Chunk.SIZE; y++)
+            vertexList.clear();
+            colorList.clear();
+            normalList.clear();
+            indexList.clear();
+            step = 1 << levelOfDetail;
+            surfaceSubBlocks = c.getSurfaceSubBlocks();
+            tessellateCells(c, 0, 0, 0, Chunk.SIZE);
+            if (vertexList.size() == 0 || indexList.size() == 0)
             {
-                for (int z = 0; z < Chunk.SIZE; z++)
+                return null;
+            }
+            if (skirts)
+            {
+                addSkirts(c);
+            }
+            DebugLog.d("Tessellator", "Verts: " + vertexList.size() / 3 + " Index: "
+                + indexList.size());
+            return new MeshData(
+                vertexList.toArray(),
+                normalList.toArray(),
+                null,
+                colorList.toArray(),
+                indexList.toArray());
+        }
+
+
+        MeshData tessellate(Chunk c, MeshData previous, long dirtySubBlocks)
+        {
+            vertexList.clear();
+            colorList.clear();
+            normalList.clear();
+            indexList.clear();
+            step = 1;
+            surfaceSubBlocks = c.getSurfaceSubBlocks();
+            int[] previousVertexStarts =
+                previous == null ? null : previous.getSubBlockVertexStarts();
+            int[] vertexStarts = new int[SUB_BLOCKS + 1];
+            int[] indexStarts = new int[SUB_BLOCKS + 1];
+            int perAxis = Chunk.SIZE / Chunk.SUB_BLOCK_SIZE;
+            for (int b = 0; b < SUB_BLOCKS; b++)
+            {
+                vertexStarts[b] = vertexList.size() / 3;
+                indexStarts[b] = indexList.size();
+                if (previousVertexStarts != null
+                    && (dirtySubBlocks & 1L << b) == 0)
+                {
+                    copySubBlock(previous, b);
+                }
+                else
                 {
-                    int cubeIndex = getCubeIndex(c, x, y, z);
-                    numIndices += TRIANGLE_TABLE[cubeIndex].length;
-                    int edgeTableValue = EDGE_TABLE[cubeIndex];
-                    for (int i = 0; i < 12; i++)
+                    tessellateCells(
+                        c,
+                        b / (perAxis * perAxis) * Chunk.SUB_BLOCK_SIZE,
+                        b / perAxis % perAxis * Chunk.SUB_BLOCK_SIZE,
+                        b % perAxis * Chunk.SUB_BLOCK_SIZE,
+                        Chunk.SUB_BLOCK_SIZE);
+                }
+            }
+            vertexStarts[SUB_BLOCKS] = vertexList.size() / 3;
+            indexStarts[SUB_BLOCKS] = indexList.size();
+            if (indexList.size() == 0)
+            {
+                return null;
+            }
+            MeshData mesh =
+                new MeshData(
+                    vertexList.toArray(),
+                    normalList.toArray(),
+                    null,
+                    colorList.toArray(),
+                    indexList.toArray());
+            return new MeshData(mesh, vertexStarts, indexStarts);
+        }
+
+
+        /**
+         * Appends the vertices and triangles of one sub-block of a previous
+         * mesh, moving its indices to where its vertices now start.
+         */
+        private void copySubBlock(MeshData previous, int b)
+        {
+            int[] vertexStarts = previous.getSubBlockVertexStarts();
+            int[] indexStarts = previous.getSubBlockIndexStarts();
+            int first = vertexStarts[b];
+            int count = vertexStarts[b + 1] - first;
+            int offset = vertexList.size() / 3 - first;
+            vertexList.add(previous.getVertices(), first * 3, count * 3);
+            normalList.add(previous.getNormals(), first * 3, count * 3);
+            colorList.add(previous.getColors(), first * 4, count * 4);
+            int[] indices = previous.getIndices();
+            for (int i = indexStarts[b]; i < indexStarts[b + 1]; i++)
+            {
+                indexList.add(indices[i] + offset);
+            }
+        }
+
+
+        /**
+         * Tessellates the cube of cells from (x0, y0, z0) that is size voxels
+         * wide.
+         */
+        private void tessellateCells(Chunk c, int x0, int y0, int z0, int size)
+        {
+            if (sharedVertices)
+            {
+                tessellateCellsShared(c, x0, y0, z0, size);
+            }
+            else
+            {
+                tessellateCellsSeparate(c, x0, y0, z0, size);
+            }
+        }
+
+
+        /**
+         * Tessellates a cube of cells, giving every cell its own copy of the
+         * vertices on its edges.
+         */
+        private void tessellateCellsSeparate(
+            Chunk c,
+            int x0,
+            int y0,
+            int z0,
+            int size)
+        {
+            float[] corners = cornerTemp;
+            for (int x = x0; x < x0 + size; x += step)
+            {
+                for (int y = y0; y < y0 + size; y += step)
+                {
+                    int row = getSubBlockRow(x, y);
+                    for (int z = z0; z < z0 + size; z += step)
                     {
-                        if ((edgeTableValue & (1 << i)) > 0)
+                        if ((surfaceSubBlocks & 1L << row + z
+                            / Chunk.SUB_BLOCK_SIZE) == 0)
                         {
-                            numVertices++;
+                            /* Nothing to find before the next sub-block */
+                            z += Chunk.SUB_BLOCK_SIZE - step - z
+                                % Chunk.SUB_BLOCK_SIZE;
+                            continue;
+                        }
+                        int cubeIndex = getCorners(c, x, y, z, step, corners);
+                        int[] edges = CASE_EDGES[cubeIndex];
+                        if (edges.length == 0)
+                        {
+                            continue;
+                        }
+                        int firstVertex = vertexList.size() / 3;
+                        for (int i = 0; i < edges.length; i++)
+                        {
+                            addEdgeVertex(x, y, z, edges[i], corners);
+                            if (gradientNormals)
+                            {
+                                addGradientNormal(
+                                    c,
+                                    x,
+                                    y,
+                                    z,
+                                    edges[i],
+                                    corners);
+                            }
+                        }
+                        Arrays.fill(slotNormals, 0, edges.length * 3, 0);
+                        int[] triangles = CASE_TRIANGLES[cubeIndex];
+                        for (int i = 0; i < triangles.length; i += 3)
+                        {
+                            int a = triangles[i];
+                            int b = triangles[i + 1];
+                            int d = triangles[i + 2];
+                            indexList.add(
+                                firstVertex + a,
+                                firstVertex + b,
+                                firstVertex + d);
+                            if (gradientNormals)
+                            {
+                                continue;
+                            }
+                            getTriangleNormal(
+                                firstVertex + a,
+                                firstVertex + b,
+                                firstVertex + d,
+                                normalTemp);
+                            float length =
+                                (float)Math.sqrt(normalTemp[0] * normalTemp[0]
+                                    + normalTemp[1] * normalTemp[1]
+                                    + normalTemp[2] * normalTemp[2]);
+                            for (int j = 0; j < 3; j++)
+                            {
+                                float n = normalTemp[j] / length;
+                                slotNormals[a * 3 + j] += n;
+                                slotNormals[b * 3 + j] += n;
+                                slotNormals[d * 3 + j] += n;
+                            }
+                        }
+                        if (gradientNormals)
+                        {
+                            continue;
+                        }
+                        for (int i = 0; i < edges.length; i++)
+                        {
+                            normalList.add(
+                                slotNormals[i * 3],
+                                slotNormals[i * 3 + 1],
+                                slotNormals[i * 3 + 2]);
                         }
                     }
                 }
             }
         }
-    }
 
 
-    private int getCubeIndex(Chunk c, int x, int y, int z)
-    {
-        int cubeIndex = 0;
-        if (c.getValue(x, y, z) <= 0)
+        /**
+         * Tessellates a cube of cells, reusing the vertex of every edge that
+         * is shared between neighbouring cells. Vertex IDs are cached for the
+         * two grid slices that the current row of cells touches.
+         */
+        private void tessellateCellsShared(
+            Chunk c,
+            int x0,
+            int y0,
+            int z0,
+            int size)
         {
-            cubeIndex |= 1;
+            int firstVertex = vertexList.size() / 3;
+            if (lowerSlice == null)
+            {
+                lowerSlice = new int[SLICE_SIZE];
+                upperSlice = new int[SLICE_SIZE];
+            }
+            clearSlice(lowerSlice, y0, z0, size);
+            clearSlice(upperSlice, y0, z0, size);
+            float[] corners = cornerTemp;
+            for (int x = x0; x < x0 + size; x += step)
+            {
+                for (int y = y0; y < y0 + size; y += step)
+                {
+                    int row = getSubBlockRow(x, y);
+                    for (int z = z0; z < z0 + size; z += step)
+                    {
+                        if ((surfaceSubBlocks & 1L << row + z
+                            / Chunk.SUB_BLOCK_SIZE) == 0)
+                        {
+                            /* Nothing to find before the next sub-block */
+                            z += Chunk.SUB_BLOCK_SIZE - step - z
+                                % Chunk.SUB_BLOCK_SIZE;
+                            continue;
+                        }
+                        int cubeIndex = getCorners(c, x, y, z, step, corners);
+                        int[] edges = CASE_EDGES[cubeIndex];
+                        if (edges.length == 0)
+                        {
+                            continue;
+                        }
+                        for (int i = 0; i < edges.length; i++)
+                        {
+                            cellVertices[i] =
+                                getSharedVertex(c, x, y, z, edges[i], corners);
+                        }
+                        int[] triangles = CASE_TRIANGLES[cubeIndex];
+                        for (int i = 0; i < triangles.length; i += 3)
+                        {
+                            int a = cellVertices[triangles[i]];
+                            int b = cellVertices[triangles[i + 1]];
+                            int d = cellVertices[triangles[i + 2]];
+                            indexList.add(a, b, d);
+                            if (!gradientNormals)
+                            {
+                                addFaceNormal(a, b, d);
+                            }
+                        }
+                    }
+                }
+                int[] temp = lowerSlice;
+                lowerSlice = upperSlice;
+                upperSlice = temp;
+                clearSlice(upperSlice, y0, z0, size);
+            }
+            if (gradientNormals)
+            {
+                return;
+            }
+            float[] normals = normalList.array();
+            for (int i = firstVertex * 3; i < normalList.size(); i += 3)
+            {
+                float length =
+                    (float)Math.sqrt(normals[i] * normals[i] + normals[i + 1]
+                        * normals[i + 1] + normals[i + 2] * normals[i + 2]);
+                if (length > 0)
+                {
+                    normals[i] /= length;
+                    normals[i + 1] /= length;
+                    normals[i + 2] /= length;
+                }
+            }
         }
-        if (c.getValue(x + 1, y, z) <= 0)
+
+
+        /**
+         * Gets the bit of the first sub-block along z of the row of sub-blocks
+         * that the cells at (x, y) are in.
+         */
+        private int getSubBlockRow(int x, int y)
         {
-            cubeIndex |= 1 << 1;
+            int perAxis = Chunk.SIZE / Chunk.SUB_BLOCK_SIZE;
+            return (x / Chunk.SUB_BLOCK_SIZE * perAxis + y
+                / Chunk.SUB_BLOCK_SIZE)
+                * perAxis;
         }
-        if (c.getValue(x + 1, y, z + 1) <= 0)
+
+
+        /**
+         * Forgets the vertex IDs in the part of a slice that a cube of cells
+         * from (y0, z0) touches.
+         */
+        private void clearSlice(int[] slice, int y0, int z0, int size)
         {
-            cubeIndex |= 1 << 2;
+            for (int y = y0; y <= y0 + size; y++)
+            {
+                int start = (y * (Chunk.SIZE + 1) + z0) * 3;
+                Arrays.fill(slice, start, start + (size + 1) * 3, -1);
+            }
         }
-        if (c.getValue(x, y, z + 1) <= 0)
+
+
+        /**
+         * Gets the ID of the vertex on one of the edges of the cell at (x, y, z),
+         * creating the vertex if no neighbouring cell has done so yet.
+         */
+        private int getSharedVertex(
+            Chunk c,
+            int x,
+            int y,
+            int z,
+            int edge,
+            float[] corners)
         {
-            cubeIndex |= 1 << 3;
+            int[] origin = CORNER_OFFSET[EDGE_CORNERS[edge][0]];
+            int[] slice = origin[0] == 0 ? lowerSlice : upperSlice;
+            int key =
+                ((y + origin[1] * step) * (Chunk.SIZE + 1) + z + origin[2]
+                    * step) * 3
+                    + EDGE_AXIS[edge];
+            int id = slice[key];
+            if (id < 0)
+            {
+                id = vertexList.size() / 3;
+                addEdgeVertex(x, y, z, edge, corners);
+                if (gradientNormals)
+                {
+                    addGradientNormal(c, x, y, z, edge, corners);
+                }
+                else
+                {
+                    normalList.add(0, 0, 0);
+                }
+                slice[key] = id;
+            }
+            return id;
         }
-        if (c.getValue(x, y + 1, z) <= 0)
+
+
+        /**
+         * Adds the position and color of the vertex on one of the edges of the
+         * cell at (x, y, z) to the buffers.
+         */
+        private void addEdgeVertex(int x, int y, int z, int edge, float[] corners)
         {
-            cubeIndex |= 1 << 4;
+            int corner1 = EDGE_CORNERS[edge][0];
+            int corner2 = EDGE_CORNERS[edge][1];
+            int[] offset1 = CORNER_OFFSET[corner1];
+            int[] offset2 = CORNER_OFFSET[corner2];
+            vertexInterpolate(
+                x + offset1[0] * step,
+                y + offset1[1] * step,
+                z + offset1[2] * step,
+                corners[corner1],
+                x + offset2[0] * step,
+                y + offset2[1] * step,
+                z + offset2[2] * step,
+                corners[corner2],
+                vertexTemp);
+            colorInterpolate(corners[corner1], corners[corner2], colorTemp);
+            vertexList.add(vertexTemp[0], vertexTemp[1], vertexTemp[2]);
+            colorList.add(colorTemp[0], colorTemp[1], colorTemp[2], colorTemp[3]);
         }
-        if (c.getValue(x + 1, y + 1, z) <= 0)
+
+
+        /**
+         * Adds the normal of the vertex on one of the edges of the cell at (x,
+         * y, z), interpolated between the gradients at the two ends of the
+         * edge in the same way as the position.
+         */
+        private void addGradientNormal(
+            Chunk c,
+            int x,
+            int y,
+            int z,
+            int edge,
+            float[] corners)
         {
-            cubeIndex |= 1 << 5;
+            int corner1 = EDGE_CORNERS[edge][0];
+            int corner2 = EDGE_CORNERS[edge][1];
+            int[] offset1 = CORNER_OFFSET[corner1];
+            int[] offset2 = CORNER_OFFSET[corner2];
+            int x1 = x + offset1[0] * step;
+            int y1 = y + offset1[1] * step;
+            int z1 = z + offset1[2] * step;
+            int x2 = x + offset2[0] * step;
+            int y2 = y + offset2[1] * step;
+            int z2 = z + offset2[2] * step;
+            float t = getInterpolation(corners[corner1], corners[corner2]);
+            float nx =
+                getSlope(c, x1, y1, z1, 0) * (1 - t)
+                    + getSlope(c, x2, y2, z2, 0) * t;
+            float ny =
+                getSlope(c, x1, y1, z1, 1) * (1 - t)
+                    + getSlope(c, x2, y2, z2, 1) * t;
+            float nz =
+                getSlope(c, x1, y1, z1, 2) * (1 - t)
+                    + getSlope(c, x2, y2, z2, 2) * t;
+            float length = (float)Math.sqrt(nx * nx + ny * ny + nz * nz);
+            if (length > 0)
+            {
+                nx /= length;
+                ny /= length;
+                nz /= length;
+            }
+            normalList.add(nx, ny, nz);
         }
-        if (c.getValue(x + 1, y + 1, z + 1) <= 0)
+
+
+        /**
+         * Hangs a skirt from every triangle edge that lies on one of the
+         * chunk's faces. The skirt stays in the plane of the face and reaches
+         * one cell into the solid side of the surface, which covers the gap
+         * left where a neighbouring chunk at another level of detail meets
+         * this face along a slightly different line.
+         */
+        private void addSkirts(Chunk c)
         {
-            cubeIndex |= 1 << 6;
+            int surfaceIndices = indexList.size();
+            for (int i = 0; i < surfaceIndices; i += 3)
+            {
+                for (int j = 0; j < 3; j++)
+                {
+                    int a = indexList.get(i + j);
+                    int b = indexList.get(i + (j + 1) % 3);
+                    int axis = getBoundaryAxis(a, b);
+                    if (axis < 0)
+                    {
+                        continue;
+                    }
+                    int skirtA = addSkirtVertex(c, a, axis);
+                    int skirtB = addSkirtVertex(c, b, axis);
+                    /* Walk the shared edge backwards to keep the winding */
+                    indexList.add(b, a, skirtA);
+                    indexList.add(b, skirtA, skirtB);
+                }
+            }
         }
-        if (c.getValue(x, y + 1, z + 1) <= 0)
+
+
+        /**
+         * Finds the chunk face that an edge between two vertices lies on.
+         *
+         * @return the axis the face is perpendicular to, or -1 if the edge
+         *         is not on a face.
+         */
+        private int getBoundaryAxis(int a, int b)
         {
-            cubeIndex |= 1 << 7;
+            float[] vertices = vertexList.array();
+            for (int k = 0; k < 3; k++)
+            {
+                float p = vertices[a * 3 + k];
+                if ((p == 0 || p == Chunk.SIZE) && vertices[b * 3 + k] == p)
+                {
+                    return k;
+                }
+            }
+            return -1;
         }
-        return cubeIndex;
-    }
 
 
-    public float[] getVertices()
-    {
-        return vertices;
-    }
+        /**
+         * Adds a copy of a vertex on a chunk face, moved one cell along the
+         * face towards increasing density.
+         *
+         * @return the ID of the new vertex.
+         */
+        private int addSkirtVertex(Chunk c, int v, int axis)
+        {
+            float[] vertices = vertexList.array();
+            float x = vertices[v * 3];
+            float y = vertices[v * 3 + 1];
+            float z = vertices[v * 3 + 2];
+            int gx = Math.round(x);
+            int gy = Math.round(y);
+            int gz = Math.round(z);
+            float dx = axis == 0 ? 0 : getSlope(c, gx, gy, gz, 0);
+            float dy = axis == 1 ? 0 : getSlope(c, gx, gy, gz, 1);
+            float dz = axis == 2 ? 0 : getSlope(c, gx, gy, gz, 2);
+            float length = (float)Math.sqrt(dx * dx + dy * dy + dz * dz);
+            float scale = length > 0 ? step / length : 0;
+            int id = vertexList.size() / 3;
+            vertexList.add(x + dx * scale, y + dy * scale, z + dz * scale);
+            colorList.add(
+                colorList.get(v * 4),
+                colorList.get(v * 4 + 1),
+                colorList.get(v * 4 + 2),
+                colorList.get(v * 4 + 3));
+            normalList.add(
+                normalList.get(v * 3),
+                normalList.get(v * 3 + 1),
+                normalList.get(v * 3 + 2));
+            return id;
+        }
 
 
-    public float[] getTextureCoords()
-    {
-        return null;
-    }
+        /**
+         * Gets the change in value across the grid point (x, y, z) along an
+         * axis, using central differences. The chunk's apron supplies the
+         * samples past its faces.
+         */
+        private float getSlope(Chunk c, int x, int y, int z, int axis)
+        {
+            int dx = axis == 0 ? 1 : 0;
+            int dy = axis == 1 ? 1 : 0;
+            int dz = axis == 2 ? 1 : 0;
+            return c.getValue(x + dx, y + dy, z + dz)
+                - c.getValue(x - dx, y - dy, z - dz);
+        }
 
 
-    public float[] getColors()
-    {
-        return colors;
-    }
+        /**
+         * Adds the area weighted normal of a triangle to each of its vertices.
+         */
+        private void addFaceNormal(int a, int b, int d)
+        {
+            getTriangleNormal(a, b, d, normalTemp);
+            float[] normals = normalList.array();
+            for (int j = 0; j < 3; j++)
+            {
+                normals[a * 3 + j] += normalTemp[j];
+                normals[b * 3 + j] += normalTemp[j];
+                normals[d * 3 + j] += normalTemp[j];
+            }
+        }
 
 
-    public float[] getNormals()
-    {
-        return normals;
-    }
+        /**
+         * Calculates the unnormalized normal of the triangle between three
+         * vertices that are already in the buffers.
+         */
+        private void getTriangleNormal(int a, int b, int d, float[] normal)
+        {
+            float[] vertices = vertexList.array();
+            float vX = vertices[b * 3] - vertices[a * 3];
+            float vY = vertices[b * 3 + 1] - vertices[a * 3 + 1];
+            float vZ = vertices[b * 3 + 2] - vertices[a * 3 + 2];
+            float wX = vertices[d * 3] - vertices[a * 3];
+            float wY = vertices[d * 3 + 1] - vertices[a * 3 + 1];
+            float wZ = vertices[d * 3 + 2] - vertices[a * 3 + 2];
+            normal[0] = vY * wZ - vZ * wY;
+            normal[1] = vZ * wX - vX * wZ;
+            normal[2] = vX * wY - vY * wX;
+        }
 
 
-    public int[] getIndices()
-    {
-        return index;
+        private void colorInterpolate(float value1, float value2, float[] color)
+        {
+            float interp;
+            if (abs(value1) < 0.0001f || abs(value1 - value2) < 0.0001f)
+            {
+                interp = 0;
+            }
+            else if (abs(value2) < 0.0001f)
+            {
+                interp = 1;
+            }
+            else
+            {
+                interp = (0 - value1) / (value2 - value1);
+            }
+            colorRamp.getColor(interp, color);
+        }
     }
-
 }
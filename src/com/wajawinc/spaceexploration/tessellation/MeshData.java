@@ -0,0 +1,145 @@
+package com.wajawinc.spaceexploration.tessellation;
+
+// -------------------------------------------------------------------------
+/**
+ * The mesh produced by tessellating one chunk. A MeshData is never changed
+ * after it is created, so it can be handed from a worker thread to the
+ * renderer without locking. The arrays are not copied, so callers must not
+ * modify them either.
+ */
+public final class MeshData
+{
+    private final float[] vertices;
+    private final float[] normals;
+    private final float[] textureCoords;
+    private final float[] colors;
+    private final int[]   indices;
+    private final int[]   subBlockVertexStarts;
+    private final int[]   subBlockIndexStarts;
+
+
+    /**
+     * Instantiates a new MeshData, taking ownership of the given arrays.
+     *
+     * @param vertices
+     *            3 position components per vertex.
+     * @param normals
+     *            3 normal components per vertex.
+     * @param textureCoords
+     *            2 texture coordinates per vertex, or null if the mesh is not
+     *            textured.
+     * @param colors
+     *            4 color components per vertex.
+     * @param indices
+     *            3 vertex indices per triangle.
+     */
+    public MeshData(
+        float[] vertices,
+        float[] normals,
+        float[] textureCoords,
+        float[] colors,
+        int[] indices)
+    {
+        this.vertices = vertices;
+        this.normals = normals;
+        this.textureCoords = textureCoords;
+        this.colors = colors;
+        this.indices = indices;
+        subBlockVertexStarts = null;
+        subBlockIndexStarts = null;
+    }
+
+
+    /**
+     * Instantiates a copy of a MeshData whose vertices and triangles are
+     * grouped by the chunk sub-block they came from.
+     *
+     * @param mesh
+     *            the mesh to copy.
+     * @param subBlockVertexStarts
+     *            the first vertex of each sub-block, plus the vertex count.
+     * @param subBlockIndexStarts
+     *            the first index of each sub-block, plus the index count.
+     */
+    MeshData(
+        MeshData mesh,
+        int[] subBlockVertexStarts,
+        int[] subBlockIndexStarts)
+    {
+        vertices = mesh.vertices;
+        normals = mesh.normals;
+        textureCoords = mesh.textureCoords;
+        colors = mesh.colors;
+        indices = mesh.indices;
+        this.subBlockVertexStarts = subBlockVertexStarts;
+        this.subBlockIndexStarts = subBlockIndexStarts;
+    }
+
+
+    public float[] getVertices()
+    {
+        return vertices;
+    }
+
+
+    public float[] getNormals()
+    {
+        return normals;
+    }
+
+
+    public float[] getTextureCoords()
+    {
+        return textureCoords;
+    }
+
+
+    public float[] getColors()
+    {
+        return colors;
+    }
+
+
+    public int[] getIndices()
+    {
+        return indices;
+    }
+
+
+    /**
+     * Gets where each chunk sub-block's vertices start, for meshes made by an
+     * IncrementalTessellator.
+     *
+     * @return one entry per sub-block plus the vertex count, or null if the
+     *         mesh is not grouped by sub-block.
+     */
+    public int[] getSubBlockVertexStarts()
+    {
+        return subBlockVertexStarts;
+    }
+
+
+    /**
+     * Gets where each chunk sub-block's indices start, for meshes made by an
+     * IncrementalTessellator.
+     *
+     * @return one entry per sub-block plus the index count, or null if the
+     *         mesh is not grouped by sub-block.
+     */
+    public int[] getSubBlockIndexStarts()
+    {
+        return subBlockIndexStarts;
+    }
+
+
+    public int getVertexCount()
+    {
+        return vertices.length / 3;
+    }
+
+
+    public int getTriangleCount()
+    {
+        return indices.length / 3;
+    }
+}
@@ -0,0 +1,764 @@
+package com.wajawinc.spaceexploration.tessellation;
+
+import com.wajawinc.spaceexploration.universe.Chunk;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+// -------------------------------------------------------------------------
+/**
+ * Reduces the number of triangles in a chunk mesh by collapsing, one at a
+ * time, the edge whose removal changes the surface the least, as measured by
+ * quadric error metrics (Garland and Heckbert). Vertices on the chunk's faces
+ * and on open edges are never moved, so the mesh still meets its neighbours
+ * exactly.
+ *
+ * Only untextured meshes are simplified. Block meshes are returned as they
+ * are.
+ */
+public final class MeshDecimator
+{
+    /* Collapses that turn a triangle further than this are refused */
+    private static final float MIN_NORMAL_DOT = 0.2f;
+
+
+    private MeshDecimator()
+    {
+    }
+
+
+    /**
+     * Simplifies a mesh until it has no more than a given number of
+     * triangles, or until no edge can be collapsed without moving the chunk's
+     * boundary or folding the surface over.
+     *
+     * @param mesh
+     *            the mesh to simplify. It is not changed.
+     * @param targetTriangles
+     *            the number of triangles to aim for.
+     * @return the simplified mesh, or the given mesh if it cannot be
+     *         simplified or is already small enough.
+     */
+    public static MeshData decimate(MeshData mesh, int targetTriangles)
+    {
+        if (mesh.getTextureCoords() != null
+            || mesh.getTriangleCount() <= targetTriangles)
+        {
+            return mesh;
+        }
+        return new Simplification(mesh).simplify(targetTriangles);
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * An edge collapse waiting in the queue. It is stale if either vertex has
+     * changed since it was queued.
+     */
+    private static class Candidate
+    {
+        private final int    remove;
+        private final int    keep;
+        private final int    removeStamp;
+        private final int    keepStamp;
+        private final double cost;
+        /* How far the merged vertex lies from keep towards remove */
+        private final float  s;
+        private final float  x;
+        private final float  y;
+        private final float  z;
+
+
+        Candidate(
+            int remove,
+            int keep,
+            int removeStamp,
+            int keepStamp,
+            double cost,
+            float s,
+            float x,
+            float y,
+            float z)
+        {
+            this.remove = remove;
+            this.keep = keep;
+            this.removeStamp = removeStamp;
+            this.keepStamp = keepStamp;
+            this.cost = cost;
+            this.s = s;
+            this.x = x;
+            this.y = y;
+            this.z = z;
+        }
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * The working state for simplifying one mesh.
+     */
+    private static class Simplification
+    {
+        private float[]                  vertices;
+        private float[]                  normals;
+        private float[]                  colors;
+        private int                      vertexCount;
+        private int[]                    triangles;
+        private boolean[]                triangleRemoved;
+        private int                      triangleCount;
+
+        /* The triangles around each vertex, including removed ones */
+        private IntList[]                vertexTriangles;
+        private boolean[]                locked;
+        private boolean[]                removed;
+        private int[]                    stamps;
+        /* 10 coefficients of each vertex's symmetric 4x4 error quadric */
+        private double[]                 quadrics;
+        private int[]                    marks;
+        private int                      mark;
+        private double[]                 quadricTemp = new double[10];
+        private float[]                  normalBefore = new float[3];
+        private float[]                  normalAfter  = new float[3];
+        private float[]                  pointTemp    = new float[9];
+        private PriorityQueue<Candidate> queue;
+
+
+        Simplification(MeshData mesh)
+        {
+            weld(mesh);
+            vertexTriangles = new IntList[vertexCount];
+            for (int i = 0; i < vertexCount; i++)
+            {
+                vertexTriangles[i] = new IntList(8);
+            }
+            for (int t = 0; t < triangles.length / 3; t++)
+            {
+                for (int k = 0; k < 3; k++)
+                {
+                    vertexTriangles[triangles[t * 3 + k]].add(t);
+                }
+            }
+            removed = new boolean[vertexCount];
+            stamps = new int[vertexCount];
+            marks = new int[vertexCount];
+            lockBoundary();
+            computeQuadrics();
+            queue =
+                new PriorityQueue<Candidate>(
+                    Math.max(triangleCount * 2, 1),
+                    new Comparator<Candidate>() {
+                        public int compare(Candidate a, Candidate b)
+                        {
+                            return Double.compare(a.cost, b.cost);
+                        }
+                    });
+            for (int t = 0; t < triangles.length / 3; t++)
+            {
+                if (triangleRemoved[t])
+                {
+                    continue;
+                }
+                for (int k = 0; k < 3; k++)
+                {
+                    int a = triangles[t * 3 + k];
+                    int b = triangles[t * 3 + (k + 1) % 3];
+                    /* Each interior edge is seen from both sides */
+                    if (a < b)
+                    {
+                        addCandidate(a, b);
+                    }
+                }
+            }
+        }
+
+
+        MeshData simplify(int targetTriangles)
+        {
+            while (triangleCount > targetTriangles && !queue.isEmpty())
+            {
+                Candidate c = queue.poll();
+                if (removed[c.remove] || removed[c.keep]
+                    || stamps[c.remove] != c.removeStamp
+                    || stamps[c.keep] != c.keepStamp || !canCollapse(c))
+                {
+                    continue;
+                }
+                collapse(c);
+            }
+            return toMeshData();
+        }
+
+
+        /**
+         * Copies the mesh, merging vertices that have exactly the same
+         * position and dropping triangles that become degenerate.
+         */
+        private void weld(MeshData mesh)
+        {
+            final float[] source = mesh.getVertices();
+            int sourceCount = mesh.getVertexCount();
+            Integer[] order = new Integer[sourceCount];
+            for (int i = 0; i < sourceCount; i++)
+            {
+                order[i] = i;
+            }
+            Arrays.sort(order, new Comparator<Integer>() {
+                public int compare(Integer a, Integer b)
+                {
+                    for (int k = 0; k < 3; k++)
+                    {
+                        int result =
+                            Float.compare(source[a * 3 + k], source[b * 3 + k]);
+                        if (result != 0)
+                        {
+                            return result;
+                        }
+                    }
+                    return 0;
+                }
+            });
+            int[] remap = new int[sourceCount];
+            int[] firstOf = new int[sourceCount];
+            vertexCount = 0;
+            for (int i = 0; i < sourceCount; i++)
+            {
+                int v = order[i];
+                if (i > 0 && samePosition(source, v, order[i - 1]))
+                {
+                    remap[v] = remap[order[i - 1]];
+                    continue;
+                }
+                firstOf[vertexCount] = v;
+                remap[v] = vertexCount++;
+            }
+            vertices = new float[vertexCount * 3];
+            normals = new float[vertexCount * 3];
+            colors = new float[vertexCount * 4];
+            for (int i = 0; i < vertexCount; i++)
+            {
+                int v = firstOf[i];
+                System.arraycopy(source, v * 3, vertices, i * 3, 3);
+                System.arraycopy(mesh.getNormals(), v * 3, normals, i * 3, 3);
+                System.arraycopy(mesh.getColors(), v * 4, colors, i * 4, 4);
+            }
+            int[] indices = mesh.getIndices();
+            triangles = new int[indices.length];
+            triangleRemoved = new boolean[indices.length / 3];
+            for (int t = 0; t < indices.length / 3; t++)
+            {
+                int a = remap[indices[t * 3]];
+                int b = remap[indices[t * 3 + 1]];
+                int d = remap[indices[t * 3 + 2]];
+                triangles[t * 3] = a;
+                triangles[t * 3 + 1] = b;
+                triangles[t * 3 + 2] = d;
+                if (a == b || b == d || a == d)
+                {
+                    triangleRemoved[t] = true;
+                }
+                else
+                {
+                    triangleCount++;
+                }
+            }
+        }
+
+
+        private boolean samePosition(float[] source, int a, int b)
+        {
+            return source[a * 3] == source[b * 3]
+                && source[a * 3 + 1] == source[b * 3 + 1]
+                && source[a * 3 + 2] == source[b * 3 + 2];
+        }
+
+
+        /**
+         * Locks the vertices on the chunk's faces, and those on edges used by
+         * only one triangle, so that the outline of the mesh never changes.
+         */
+        private void lockBoundary()
+        {
+            locked = new boolean[vertexCount];
+            for (int i = 0; i < vertexCount; i++)
+            {
+                for (int k = 0; k < 3; k++)
+                {
+                    float p = vertices[i * 3 + k];
+                    if (p <= 0 || p >= Chunk.SIZE)
+                    {
+                        locked[i] = true;
+                    }
+                }
+            }
+            Map<Long, Integer> edgeUses = new HashMap<Long, Integer>();
+            for (int t = 0; t < triangleRemoved.length; t++)
+            {
+                if (triangleRemoved[t])
+                {
+                    continue;
+                }
+                for (int k = 0; k < 3; k++)
+                {
+                    Long key =
+                        getEdgeKey(
+                            triangles[t * 3 + k],
+                            triangles[t * 3 + (k + 1) % 3]);
+                    Integer uses = edgeUses.get(key);
+                    edgeUses.put(key, uses == null ? 1 : uses + 1);
+                }
+            }
+            for (Map.Entry<Long, Integer> entry : edgeUses.entrySet())
+            {
+                if (entry.getValue() == 1)
+                {
+                    long key = entry.getKey();
+                    locked[(int)(key >>> 32)] = true;
+                    locked[(int)key] = true;
+                }
+            }
+        }
+
+
+        private long getEdgeKey(int a, int b)
+        {
+            return (long)Math.min(a, b) << 32 | Math.max(a, b);
+        }
+
+
+        /**
+         * Sums the area weighted plane quadric of every triangle into its
+         * vertices.
+         */
+        private void computeQuadrics()
+        {
+            quadrics = new double[vertexCount * 10];
+            for (int t = 0; t < triangleRemoved.length; t++)
+            {
+                if (triangleRemoved[t])
+                {
+                    continue;
+                }
+                int a = triangles[t * 3];
+                int b = triangles[t * 3 + 1];
+                int d = triangles[t * 3 + 2];
+                double vX = vertices[b * 3] - vertices[a * 3];
+                double vY = vertices[b * 3 + 1] - vertices[a * 3 + 1];
+                double vZ = vertices[b * 3 + 2] - vertices[a * 3 + 2];
+                double wX = vertices[d * 3] - vertices[a * 3];
+                double wY = vertices[d * 3 + 1] - vertices[a * 3 + 1];
+                double wZ = vertices[d * 3 + 2] - vertices[a * 3 + 2];
+                double nX = vY * wZ - vZ * wY;
+                double nY = vZ * wX - vX * wZ;
+                double nZ = vX * wY - vY * wX;
+                double length = Math.sqrt(nX * nX + nY * nY + nZ * nZ);
+                if (length == 0)
+                {
+                    continue;
+                }
+                /* The area is length / 2, and the plane normal is n / length */
+                double area = length / 2;
+                nX /= length;
+                nY /= length;
+                nZ /= length;
+                double dist =
+                    -(nX * vertices[a * 3] + nY * vertices[a * 3 + 1] + nZ
+                        * vertices[a * 3 + 2]);
+                double[] q = quadricTemp;
+                q[0] = nX * nX;
+                q[1] = nX * nY;
+                q[2] = nX * nZ;
+                q[3] = nX * dist;
+                q[4] = nY * nY;
+                q[5] = nY * nZ;
+                q[6] = nY * dist;
+                q[7] = nZ * nZ;
+                q[8] = nZ * dist;
+                q[9] = dist * dist;
+                for (int j = 0; j < 10; j++)
+                {
+                    quadrics[a * 10 + j] += q[j] * area;
+                    quadrics[b * 10 + j] += q[j] * area;
+                    quadrics[d * 10 + j] += q[j] * area;
+                }
+            }
+        }
+
+
+        /**
+         * Queues the collapse of the edge between two vertices, at whichever
+         * position along it (or at the quadric's optimum) costs the least.
+         */
+        private void addCandidate(int a, int b)
+        {
+            if (locked[a] && locked[b])
+            {
+                return;
+            }
+            int keep = locked[b] ? b : a;
+            int remove = keep == a ? b : a;
+            double[] q = quadricTemp;
+            for (int j = 0; j < 10; j++)
+            {
+                q[j] = quadrics[keep * 10 + j] + quadrics[remove * 10 + j];
+            }
+            float kX = vertices[keep * 3];
+            float kY = vertices[keep * 3 + 1];
+            float kZ = vertices[keep * 3 + 2];
+            float eX = vertices[remove * 3] - kX;
+            float eY = vertices[remove * 3 + 1] - kY;
+            float eZ = vertices[remove * 3 + 2] - kZ;
+            float bestS = 0;
+            double bestCost = getError(q, kX, kY, kZ);
+            if (!locked[keep])
+            {
+                for (float s = 0.5f; s <= 1; s += 0.5f)
+                {
+                    double cost =
+                        getError(q, kX + eX * s, kY + eY * s, kZ + eZ * s);
+                    if (cost < bestCost)
+                    {
+                        bestCost = cost;
+                        bestS = s;
+                    }
+                }
+                /*
+                 * The quadric's minimum, projected onto the edge so that the
+                 * vertex attributes can be interpolated.
+                 */
+                float s = getOptimalS(q, kX, kY, kZ, eX, eY, eZ);
+                if (s > 0 && s < 1)
+                {
+                    double cost =
+                        getError(q, kX + eX * s, kY + eY * s, kZ + eZ * s);
+                    if (cost < bestCost)
+                    {
+                        bestCost = cost;
+                        bestS = s;
+                    }
+                }
+            }
+            queue.add(new Candidate(
+                remove,
+                keep,
+                stamps[remove],
+                stamps[keep],
+                bestCost,
+                bestS,
+                kX + eX * bestS,
+                kY + eY * bestS,
+                kZ + eZ * bestS));
+        }
+
+
+        /**
+         * Finds the point along an edge where a quadric's error is least.
+         * The error is quadratic in s, so this is where its derivative is 0.
+         */
+        private float getOptimalS(
+            double[] q,
+            float kX,
+            float kY,
+            float kZ,
+            float eX,
+            float eY,
+            float eZ)
+        {
+            /* Q applied to the direction (e, 0) and to the point (k, 1) */
+            double qeX = q[0] * eX + q[1] * eY + q[2] * eZ;
+            double qeY = q[1] * eX + q[4] * eY + q[5] * eZ;
+            double qeZ = q[2] * eX + q[5] * eY + q[7] * eZ;
+            double eQe = eX * qeX + eY * qeY + eZ * qeZ;
+            if (eQe <= 0)
+            {
+                return -1;
+            }
+            double eQk =
+                qeX * kX + qeY * kY + qeZ * kZ
+                    + (q[3] * eX + q[6] * eY + q[8] * eZ);
+            return (float)(-eQk / eQe);
+        }
+
+
+        private double getError(double[] q, float x, float y, float z)
+        {
+            return q[0] * x * x + 2 * q[1] * x * y + 2 * q[2] * x * z + 2
+                * q[3] * x + q[4] * y * y + 2 * q[5] * y * z + 2 * q[6] * y
+                + q[7] * z * z + 2 * q[8] * z + q[9];
+        }
+
+
+        /**
+         * Checks that collapsing an edge keeps the mesh manifold and does not
+         * fold any remaining triangle over.
+         */
+        private boolean canCollapse(Candidate c)
+        {
+            /*
+             * The two vertices may only share the neighbours that sit
+             * opposite the edge, or the collapse would pinch the surface.
+             */
+            mark++;
+            int sharedTriangles = 0;
+            IntList around = vertexTriangles[c.remove];
+            for (int i = 0; i < around.size(); i++)
+            {
+                int t = around.get(i);
+                if (triangleRemoved[t])
+                {
+                    continue;
+                }
+                if (contains(t, c.keep))
+                {
+                    sharedTriangles++;
+                }
+                for (int k = 0; k < 3; k++)
+                {
+                    marks[triangles[t * 3 + k]] = mark;
+                }
+            }
+            marks[c.remove] = 0;
+            marks[c.keep] = 0;
+            int sharedNeighbours = 0;
+            around = vertexTriangles[c.keep];
+            for (int i = 0; i < around.size(); i++)
+            {
+                int t = around.get(i);
+                if (triangleRemoved[t])
+                {
+                    continue;
+                }
+                for (int k = 0; k < 3; k++)
+                {
+                    int v = triangles[t * 3 + k];
+                    if (marks[v] == mark)
+                    {
+                        sharedNeighbours++;
+                        /* Count each neighbour once */
+                        marks[v] = 0;
+                    }
+                }
+            }
+            if (sharedNeighbours > sharedTriangles)
+            {
+                return false;
+            }
+            return !folds(c.remove, c.keep, c)
+                && (c.s == 0 || !folds(c.keep, c.remove, c));
+        }
+
+
+        /**
+         * Checks whether moving a vertex to the candidate's position turns
+         * any of its triangles that do not also use another vertex too far.
+         */
+        private boolean folds(int vertex, int other, Candidate c)
+        {
+            IntList around = vertexTriangles[vertex];
+            for (int i = 0; i < around.size(); i++)
+            {
+                int t = around.get(i);
+                if (triangleRemoved[t] || contains(t, other))
+                {
+                    continue;
+                }
+                float[] before = normalBefore;
+                float[] after = normalAfter;
+                getNormal(t, -1, 0, 0, 0, before);
+                getNormal(t, vertex, c.x, c.y, c.z, after);
+                float dot =
+                    before[0] * after[0] + before[1] * after[1] + before[2]
+                        * after[2];
+                float lengths =
+                    (float)Math.sqrt((before[0] * before[0] + before[1]
+                        * before[1] + before[2] * before[2])
+                        * (after[0] * after[0] + after[1] * after[1] + after[2]
+                            * after[2]));
+                if (lengths == 0 || dot < MIN_NORMAL_DOT * lengths)
+                {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+
+        /**
+         * Calculates the unnormalized normal of a triangle, optionally with
+         * one of its vertices moved.
+         */
+        private void getNormal(
+            int t,
+            int moved,
+            float x,
+            float y,
+            float z,
+            float[] normal)
+        {
+            float[] p = pointTemp;
+            for (int k = 0; k < 3; k++)
+            {
+                int v = triangles[t * 3 + k];
+                if (v == moved)
+                {
+                    p[k * 3] = x;
+                    p[k * 3 + 1] = y;
+                    p[k * 3 + 2] = z;
+                }
+                else
+                {
+                    System.arraycopy(vertices, v * 3, p, k * 3, 3);
+                }
+            }
+            float vX = p[3] - p[0];
+            float vY = p[4] - p[1];
+            float vZ = p[5] - p[2];
+            float wX = p[6] - p[0];
+            float wY = p[7] - p[1];
+            float wZ = p[8] - p[2];
+            normal[0] = vY * wZ - vZ * wY;
+            normal[1] = vZ * wX - vX * wZ;
+            normal[2] = vX * wY - vY * wX;
+        }
+
+
+        private boolean contains(int t, int v)
+        {
+            return triangles[t * 3] == v || triangles[t * 3 + 1] == v
+                || triangles[t * 3 + 2] == v;
+        }
+
+
+        /**
+         * Merges the removed vertex into the kept one, drops the triangles
+         * that used both, and requeues the edges around the kept vertex.
+         */
+        private void collapse(Candidate c)
+        {
+            int keep = c.keep;
+            int remove = c.remove;
+            float s = c.s;
+            vertices[keep * 3] = c.x;
+            vertices[keep * 3 + 1] = c.y;
+            vertices[keep * 3 + 2] = c.z;
+            float length = 0;
+            for (int j = 0; j < 3; j++)
+            {
+                float n =
+                    normals[keep * 3 + j] * (1 - s) + normals[remove * 3 + j]
+                        * s;
+                normals[keep * 3 + j] = n;
+                length += n * n;
+            }
+            length = (float)Math.sqrt(length);
+            for (int j = 0; j < 3 && length > 0; j++)
+            {
+                normals[keep * 3 + j] /= length;
+            }
+            for (int j = 0; j < 4; j++)
+            {
+                colors[keep * 4 + j] =
+                    colors[keep * 4 + j] * (1 - s) + colors[remove * 4 + j] * s;
+            }
+            for (int j = 0; j < 10; j++)
+            {
+                quadrics[keep * 10 + j] += quadrics[remove * 10 + j];
+            }
+            IntList around = vertexTriangles[remove];
+            for (int i = 0; i < around.size(); i++)
+            {
+                int t = around.get(i);
+                if (triangleRemoved[t])
+                {
+                    continue;
+                }
+                if (contains(t, keep))
+                {
+                    triangleRemoved[t] = true;
+                    triangleCount--;
+                    continue;
+                }
+                for (int k = 0; k < 3; k++)
+                {
+                    if (triangles[t * 3 + k] == remove)
+                    {
+                        triangles[t * 3 + k] = keep;
+                    }
+                }
+                vertexTriangles[keep].add(t);
+            }
+            removed[remove] = true;
+            stamps[keep]++;
+            around = vertexTriangles[keep];
+            mark++;
+            marks[keep] = mark;
+            for (int i = 0; i < around.size(); i++)
+            {
+                int t = around.get(i);
+                if (triangleRemoved[t])
+                {
+                    continue;
+                }
+                for (int k = 0; k < 3; k++)
+                {
+                    int v = triangles[t * 3 + k];
+                    if (marks[v] != mark)
+                    {
+                        marks[v] = mark;
+                        addCandidate(keep, v);
+                    }
+                }
+            }
+        }
+
+
+        /**
+         * Packs the remaining vertices and triangles into a new MeshData.
+         */
+        private MeshData toMeshData()
+        {
+            int[] remap = new int[vertexCount];
+            Arrays.fill(remap, -1);
+            int[] indices = new int[triangleCount * 3];
+            int used = 0;
+            int index = 0;
+            for (int t = 0; t < triangleRemoved.length; t++)
+            {
+                if (triangleRemoved[t])
+                {
+                    continue;
+                }
+                for (int k = 0; k < 3; k++)
+                {
+                    int v = triangles[t * 3 + k];
+                    if (remap[v] < 0)
+                    {
+                        remap[v] = used++;
+                    }
+                    indices[index++] = remap[v];
+                }
+            }
+            float[] newVertices = new float[used * 3];
+            float[] newNormals = new float[used * 3];
+            float[] newColors = new float[used * 4];
+            for (int v = 0; v < vertexCount; v++)
+            {
+                int id = remap[v];
+                if (id < 0)
+                {
+                    continue;
+                }
+                System.arraycopy(vertices, v * 3, newVertices, id * 3, 3);
+                System.arraycopy(normals, v * 3, newNormals, id * 3, 3);
+                System.arraycopy(colors, v * 4, newColors, id * 4, 4);
+            }
+            return new MeshData(
+                newVertices,
+                newNormals,
+                null,
+                newColors,
+                indices);
+        }
+    }
+}
@@ -0,0 +1,363 @@
+package com.wajawinc.spaceexploration.tessellation;
+
+import com.wajawinc.spaceexploration.universe.Chunk;
+import com.wajawinc.spaceexploration.util.DebugLog;
+import java.util.Arrays;
+
+// -------------------------------------------------------------------------
+/**
+ * An implementation of Naive Surface Nets. Every cell that the surface passes
+ * through gets one vertex, placed at the average of the points where the
+ * surface crosses the cell's edges, and every grid edge that the surface
+ * crosses becomes a quad joining the vertices of the four cells around it.
+ * Vertices are shared by construction. On terrain the mesh has about as many
+ * triangles as Marching Cubes, a few more from the quads that close each
+ * chunk face.
+ *
+ * The cells just outside the chunk are squashed flat onto the chunk's faces,
+ * so their vertices only depend on the samples that the chunk shares with its
+ * neighbours. Neighbouring chunks therefore put the same vertices along their
+ * common face and meet without cracks.
+ */
+public class SurfaceNetsChunkTessellator
+    implements ChunkTessellator
+{
+    /* Cells are indexed from -1 to SIZE along each axis */
+    private static final int     CELLS_PER_AXIS = Chunk.SIZE + 2;
+
+    /*
+     * The offset of each of the 8 cube corners from the cell's lowest corner,
+     * as 0 for the low side and 1 for the high side of the cell.
+     */
+    private static final int[][] CORNER_OFFSET  = { { 0, 0, 0 }, { 1, 0, 0 },
+        { 1, 0, 1 }, { 0, 0, 1 }, { 0, 1, 0 }, { 1, 1, 0 }, { 1, 1, 1 },
+        { 0, 1, 1 }                            };
+
+    /* The two corners joined by each of the 12 cube edges */
+    private static final int[][] EDGE_CORNERS   = { { 0, 1 }, { 1, 2 },
+        { 3, 2 }, { 0, 3 }, { 4, 5 }, { 5, 6 }, { 7, 6 }, { 4, 7 }, { 0, 4 },
+        { 1, 5 }, { 2, 6 }, { 3, 7 }           };
+
+    /* Initial room for this many vertices in the reusable buffers */
+    private static final int     INITIAL_VERTEX_CAPACITY = 1024;
+
+    private final ColorRamp      colorRamp;
+
+    /* Scratch state for each thread that tessellates with this object */
+    private final ThreadLocal<Extraction> extractions =
+        new ThreadLocal<Extraction>() {
+            @Override
+            protected Extraction initialValue()
+            {
+                return new Extraction();
+            }
+        };
+
+    /* The result of the last call to tessellateChunk */
+    private MeshData             mesh;
+
+
+    public SurfaceNetsChunkTessellator()
+    {
+        this(ColorRamp.getDefault());
+    }
+
+
+    /**
+     * Instantiates a new SurfaceNetsChunkTessellator.
+     *
+     * @param colorRamp
+     *            the colors given to vertices, looked up by how far along
+     *            their cell's edges the surface crosses on average.
+     */
+    public SurfaceNetsChunkTessellator(ColorRamp colorRamp)
+    {
+        this.colorRamp = colorRamp;
+    }
+
+
+    public MeshData tessellate(Chunk c)
+    {
+        return extractions.get().tessellate(c);
+    }
+
+
+    public void tessellateChunk(Chunk c)
+    {
+        mesh = tessellate(c);
+    }
+
+
+    public float[] getVertices()
+    {
+        return mesh == null ? null : mesh.getVertices();
+    }
+
+
+    public float[] getTextureCoords()
+    {
+        return null;
+    }
+
+
+    public float[] getColors()
+    {
+        return mesh == null ? null : mesh.getColors();
+    }
+
+
+    public float[] getNormals()
+    {
+        return mesh == null ? null : mesh.getNormals();
+    }
+
+
+    public int[] getIndices()
+    {
+        return mesh == null ? null : mesh.getIndices();
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * The scratch buffers used to tessellate one chunk at a time. Each thread
+     * gets its own, so the tessellator itself holds no per-chunk state.
+     */
+    private class Extraction
+    {
+        private FloatList vertexList   =
+            new FloatList(INITIAL_VERTEX_CAPACITY * 3);
+        private FloatList colorList    =
+            new FloatList(INITIAL_VERTEX_CAPACITY * 4);
+        private FloatList normalList   =
+            new FloatList(INITIAL_VERTEX_CAPACITY * 3);
+        private IntList   indexList    =
+            new IntList(INITIAL_VERTEX_CAPACITY * 6);
+
+        /*
+         * The vertex ID of each cell, or -1 if it has not been made yet.
+         * Indexed by ((x + 1) * CELLS_PER_AXIS + y + 1) * CELLS_PER_AXIS + z
+         * + 1 for the cell whose lowest corner is (x, y, z).
+         */
+        private int[]     cellVertices =
+            new int[CELLS_PER_AXIS * CELLS_PER_AXIS * CELLS_PER_AXIS];
+        private float[]   corners      = new float[8];
+        private int[]     low          = new int[3];
+        private int[]     high         = new int[3];
+        private int[]     cell         = new int[3];
+        private float[]   normalTemp   = new float[3];
+        private float[]   colorTemp    = new float[4];
+
+
+        MeshData tessellate(Chunk c)
+        {
+            vertexList.clear();
+            colorList.clear();
+            normalList.clear();
+            indexList.clear();
+            Arrays.fill(cellVertices, -1);
+            for (int x = 0; x <= Chunk.SIZE; x++)
+            {
+                for (int y = 0; y <= Chunk.SIZE; y++)
+                {
+                    for (int z = 0; z <= Chunk.SIZE; z++)
+                    {
+                        boolean inside = c.getValue(x, y, z) <= 0;
+                        if (x < Chunk.SIZE
+                            && inside != c.getValue(x + 1, y, z) <= 0)
+                        {
+                            addQuad(c, x, y, z, 0, inside);
+                        }
+                        if (y < Chunk.SIZE
+                            && inside != c.getValue(x, y + 1, z) <= 0)
+                        {
+                            addQuad(c, x, y, z, 1, inside);
+                        }
+                        if (z < Chunk.SIZE
+                            && inside != c.getValue(x, y, z + 1) <= 0)
+                        {
+                            addQuad(c, x, y, z, 2, inside);
+                        }
+                    }
+                }
+            }
+            if (indexList.size() == 0)
+            {
+                return null;
+            }
+            float[] normals = normalList.array();
+            for (int i = 0; i < normalList.size(); i += 3)
+            {
+                float length =
+                    (float)Math.sqrt(normals[i] * normals[i] + normals[i + 1]
+                        * normals[i + 1] + normals[i + 2] * normals[i + 2]);
+                if (length > 0)
+                {
+                    normals[i] /= length;
+                    normals[i + 1] /= length;
+                    normals[i + 2] /= length;
+                }
+            }
+            DebugLog.d("Tessellator", "Verts: " + vertexList.size() / 3 + " Index: "
+                + indexList.size());
+            return new MeshData(
+                vertexList.toArray(),
+                normalList.toArray(),
+                null,
+                colorList.toArray(),
+                indexList.toArray());
+        }
+
+
+        /**
+         * Adds the quad for the grid edge that runs from (x, y, z) along an
+         * axis, joining the four cells around the edge. The quad faces the
+         * same way as Marching Cubes triangles, away from the inside of the
+         * surface.
+         */
+        private void addQuad(
+            Chunk c,
+            int x,
+            int y,
+            int z,
+            int axis,
+            boolean startInside)
+        {
+            int b = (axis + 1) % 3;
+            int d = (axis + 2) % 3;
+            cell[0] = x;
+            cell[1] = y;
+            cell[2] = z;
+            int pb = cell[b];
+            int pd = cell[d];
+            cell[b] = pb - 1;
+            cell[d] = pd - 1;
+            int v00 = getCellVertex(c, cell);
+            cell[b] = pb;
+            int v10 = getCellVertex(c, cell);
+            cell[d] = pd;
+            int v11 = getCellVertex(c, cell);
+            cell[b] = pb - 1;
+            int v01 = getCellVertex(c, cell);
+            if (startInside)
+            {
+                addTriangle(v00, v10, v11);
+                addTriangle(v00, v11, v01);
+            }
+            else
+            {
+                addTriangle(v00, v11, v10);
+                addTriangle(v00, v01, v11);
+            }
+        }
+
+
+        /**
+         * Gets the ID of the vertex of a cell, making it if needed. Cells
+         * outside the chunk are clamped to the chunk's faces.
+         */
+        private int getCellVertex(Chunk c, int[] cellCorner)
+        {
+            int key =
+                ((cellCorner[0] + 1) * CELLS_PER_AXIS + cellCorner[1] + 1)
+                    * CELLS_PER_AXIS + cellCorner[2] + 1;
+            int id = cellVertices[key];
+            if (id >= 0)
+            {
+                return id;
+            }
+            for (int k = 0; k < 3; k++)
+            {
+                low[k] = Math.max(cellCorner[k], 0);
+                high[k] = Math.min(cellCorner[k] + 1, Chunk.SIZE);
+            }
+            for (int i = 0; i < 8; i++)
+            {
+                int[] offset = CORNER_OFFSET[i];
+                corners[i] =
+                    c.getValue(
+                        offset[0] == 0 ? low[0] : high[0],
+                        offset[1] == 0 ? low[1] : high[1],
+                        offset[2] == 0 ? low[2] : high[2]);
+            }
+            /*
+             * A flattened cell repeats some of its edges, which does not
+             * change the average.
+             */
+            float sumX = 0;
+            float sumY = 0;
+            float sumZ = 0;
+            float sumT = 0;
+            int crossings = 0;
+            for (int e = 0; e < 12; e++)
+            {
+                int corner1 = EDGE_CORNERS[e][0];
+                int corner2 = EDGE_CORNERS[e][1];
+                float value1 = corners[corner1];
+                float value2 = corners[corner2];
+                if ((value1 <= 0) == (value2 <= 0))
+                {
+                    continue;
+                }
+                float t = value1 / (value1 - value2);
+                int[] offset1 = CORNER_OFFSET[corner1];
+                int[] offset2 = CORNER_OFFSET[corner2];
+                sumX += lerp(offset1[0], offset2[0], t, 0);
+                sumY += lerp(offset1[1], offset2[1], t, 1);
+                sumZ += lerp(offset1[2], offset2[2], t, 2);
+                sumT += t;
+                crossings++;
+            }
+            colorRamp.getColor(sumT / crossings, colorTemp);
+            id = vertexList.size() / 3;
+            vertexList.add(sumX / crossings, sumY / crossings, sumZ
+                / crossings);
+            colorList.add(
+                colorTemp[0],
+                colorTemp[1],
+                colorTemp[2],
+                colorTemp[3]);
+            normalList.add(0, 0, 0);
+            cellVertices[key] = id;
+            return id;
+        }
+
+
+        /**
+         * Interpolates along one axis of the current cell between two corner
+         * offsets.
+         */
+        private float lerp(int offset1, int offset2, float t, int axis)
+        {
+            float p1 = offset1 == 0 ? low[axis] : high[axis];
+            float p2 = offset2 == 0 ? low[axis] : high[axis];
+            return p1 + t * (p2 - p1);
+        }
+
+
+        /**
+         * Adds a triangle and its area weighted normal.
+         */
+        private void addTriangle(int a, int b, int d)
+        {
+            indexList.add(a, b, d);
+            float[] vertices = vertexList.array();
+            float vX = vertices[b * 3] - vertices[a * 3];
+            float vY = vertices[b * 3 + 1] - vertices[a * 3 + 1];
+            float vZ = vertices[b * 3 + 2] - vertices[a * 3 + 2];
+            float wX = vertices[d * 3] - vertices[a * 3];
+            float wY = vertices[d * 3 + 1] - vertices[a * 3 + 1];
+            float wZ = vertices[d * 3 + 2] - vertices[a * 3 + 2];
+            normalTemp[0] = vY * wZ - vZ * wY;
+            normalTemp[1] = vZ * wX - vX * wZ;
+            normalTemp[2] = vX * wY - vY * wX;
+            float[] normals = normalList.array();
+            for (int j = 0; j < 3; j++)
+            {
+                normals[a * 3 + j] += normalTemp[j];
+                normals[b * 3 + j] += normalTemp[j];
+                normals[d * 3 + j] += normalTemp[j];
+            }
+        }
+    }
+}
@@ -1,6 +1,10 @@
 package com.wajawinc.spaceexploration.universe;
 
 import com.wajawinc.spaceexploration.tessellation.ChunkTessellator;
+import com.wajawinc.spaceexploration.tessellation.IncrementalTessellator;
+import com.wajawinc.spaceexploration.tessellation.LevelOfDetailTessellator;
+import com.wajawinc.spaceexploration.tessellation.MeshData;
+import com.wajawinc.spaceexploration.tessellation.MeshDecimator;
 import com.wajawinc.spaceexploration.universe.generator.PlanetGenerator;
 import rajawali.BaseObject3D;
 import rajawali.materials.DiffuseMaterial;
@@ -11,10 +15,87 @@ public class Chunk
 {
     public static final int SIZE = 32;
 
+    /*
+     * The number of extra samples stored past each face of the chunk, so that
+     * gradients can be taken with central differences at the chunk's edges.
+     * getValue accepts coordinates from -APRON to SIZE + APRON.
+     */
+    public static final int APRON = 1;
+
+    /*
+     * The width in voxels of the sub-blocks that edits are tracked in. A chunk
+     * has (SIZE / SUB_BLOCK_SIZE)^3 of them, which must fit in a long.
+     */
+    public static final int SUB_BLOCK_SIZE = 8;
+
+    private static final int SUB_BLOCKS_PER_AXIS = SIZE / SUB_BLOCK_SIZE;
+
+    /*
+     * For each sample coordinate along an axis, plus APRON, the sub-blocks
+     * along that axis with a cell that reads the sample. Cell x reads samples
+     * x - 1 to x + 2, counting the central differences for its normals.
+     */
+    private static final int[] AXIS_SUB_BLOCKS = new int[SIZE + 1 + 2 * APRON];
+
+    /*
+     * For each set of sub-blocks along one axis, the bits of every sub-block
+     * in the chunk that lies in the set. Indexed by [axis][set].
+     */
+    private static final long[][] SUB_BLOCK_BITS =
+        new long[3][1 << SUB_BLOCKS_PER_AXIS];
+
+    static
+    {
+        for (int i = 0; i < AXIS_SUB_BLOCKS.length; i++)
+        {
+            int sample = i - APRON;
+            int first = Math.max(sample - 2, 0) / SUB_BLOCK_SIZE;
+            int last = Math.min(sample + 1, SIZE - 1) / SUB_BLOCK_SIZE;
+            for (int b = first; b <= last; b++)
+            {
+                AXIS_SUB_BLOCKS[i] |= 1 << b;
+            }
+        }
+        for (int b = 0; b < SUB_BLOCKS_PER_AXIS * SUB_BLOCKS_PER_AXIS
+            * SUB_BLOCKS_PER_AXIS; b++)
+        {
+            int[] coordinates =
+                { b / (SUB_BLOCKS_PER_AXIS * SUB_BLOCKS_PER_AXIS),
+                    b / SUB_BLOCKS_PER_AXIS % SUB_BLOCKS_PER_AXIS,
+                    b % SUB_BLOCKS_PER_AXIS };
+            for (int axis = 0; axis < 3; axis++)
+            {
+                for (int set = 0; set < 1 << SUB_BLOCKS_PER_AXIS; set++)
+                {
+                    if ((set & 1 << coordinates[axis]) != 0)
+                    {
+                        SUB_BLOCK_BITS[axis][set] |= 1L << b;
+                    }
+                }
+            }
+        }
+    }
+
     private Planet           planet;
 
     private float[][][]        data;
 
+    private MeshData           mesh;
+
+    /*
+     * One bit for each sub-block changed since the last tessellation, for
+     * the sub-block at (x, y, z) bit (x * n + y) * n + z, where n is
+     * SIZE / SUB_BLOCK_SIZE.
+     */
+    private long               dirtySubBlocks;
+
+    /*
+     * One bit for each sub-block that may hold part of the isosurface, in
+     * the same order as dirtySubBlocks. The rest are known to be all solid
+     * or all empty, and need not be tessellated.
+     */
+    private long               surfaceSubBlocks = -1L;
+
 
     /**
      * Instantiates a new Chunk at a given distance from the planet's center.
@@ -28,7 +109,9 @@ public class Chunk
     {
         this.planet = planet;
         setPosition(location);
-        data = new float[SIZE+1][SIZE+1][SIZE+1];
+        data =
+            new float[SIZE + 1 + 2 * APRON][SIZE + 1 + 2 * APRON][SIZE + 1 + 2
+                * APRON];
     }
 
 
@@ -57,11 +140,17 @@ public class Chunk
 */
 
     public void setValue(int x, int y, int z, float val) {
-        data[x][y][z] = val;
+        data[x + APRON][y + APRON][z + APRON] = val;
+        long reading =
+            SUB_BLOCK_BITS[0][AXIS_SUB_BLOCKS[x + APRON]]
+                & SUB_BLOCK_BITS[1][AXIS_SUB_BLOCKS[y + APRON]]
+                & SUB_BLOCK_BITS[2][AXIS_SUB_BLOCKS[z + APRON]];
+        dirtySubBlocks |= reading;
+        surfaceSubBlocks |= reading;
     }
 
     public float getValue(int x, int y, int z) {
-        return data[x][y][z];
+        return data[x + APRON][y + APRON][z + APRON];
     }
 
     /**
@@ -71,16 +160,46 @@ public class Chunk
     public boolean tessellate()
     {
         ChunkTessellator tessellator = planet.getChunkTessellator();
-        tessellator.tessellateChunk(this);
-        if (tessellator.getVertices() == null) {
+        MeshData mesh;
+        dirtySubBlocks = 0;
+        if (surfaceSubBlocks == 0)
+        {
+            clearMesh();
             return false;
         }
-        setData(
-            tessellator.getVertices(),
-            tessellator.getNormals(),
-            tessellator.getTextureCoords(),
-            tessellator.getColors(),
-            tessellator.getIndices());
+        int levelOfDetail = planet.getLevelOfDetail(getPosition());
+        if (levelOfDetail == 0 && tessellator instanceof IncrementalTessellator)
+        {
+            /*
+             * Grouped by sub-block, so that the first retessellate only redoes
+             * the sub-blocks that were edited. Full resolution meshes are
+             * never decimated.
+             */
+            mesh =
+                ((IncrementalTessellator)tessellator).tessellate(this, null, -1L);
+        }
+        else if (planet.getViewpoint() != null
+            && tessellator instanceof LevelOfDetailTessellator)
+        {
+            mesh = ((LevelOfDetailTessellator)tessellator).tessellate(
+                this,
+                levelOfDetail);
+        }
+        else
+        {
+            mesh = tessellator.tessellate(this);
+        }
+        if (mesh == null) {
+            clearMesh();
+            return false;
+        }
+        int budget =
+            planet.getTriangleBudget(getPosition(), mesh.getTriangleCount());
+        if (budget < mesh.getTriangleCount())
+        {
+            mesh = MeshDecimator.decimate(mesh, budget);
+        }
+        setMesh(mesh);
         //SimpleMaterial mat = new SimpleMaterial();
         DiffuseMaterial mat = new DiffuseMaterial();
         mat.setUseColor(true);
@@ -91,4 +210,135 @@ public class Chunk
         return true;
     }
 
+
+    /**
+     * Updates the isosurface after calls to setValue. If the planet's
+     * tessellator is an IncrementalTessellator, only the sub-blocks that were
+     * changed are tessellated again. A chunk tessellated at a coarser level
+     * of detail is redone whole the first time, at full resolution. Meshes
+     * updated this way are not decimated.
+     *
+     * @return true if this Chunk still has an isosurface.
+     */
+    public boolean retessellate()
+    {
+        ChunkTessellator tessellator = planet.getChunkTessellator();
+        if (mesh == null || !(tessellator instanceof IncrementalTessellator))
+        {
+            return tessellate();
+        }
+        long dirty = dirtySubBlocks;
+        dirtySubBlocks = 0;
+        if (dirty == 0)
+        {
+            return true;
+        }
+        MeshData updated =
+            ((IncrementalTessellator)tessellator).tessellate(this, mesh, dirty);
+        if (updated == null)
+        {
+            clearMesh();
+            return false;
+        }
+        setMesh(updated);
+        return true;
+    }
+
+
+    /**
+     * Gets the sub-blocks changed by setValue since this Chunk was last
+     * tessellated.
+     *
+     * @return one bit per sub-block, with the sub-block at (x, y, z) at bit
+     *         (x * n + y) * n + z, where n is SIZE / SUB_BLOCK_SIZE.
+     */
+    public long getDirtySubBlocks()
+    {
+        return dirtySubBlocks;
+    }
+
+
+    /**
+     * Gets the sub-blocks that may hold part of the isosurface. A tessellator
+     * can skip the cells of the others.
+     *
+     * @return one bit per sub-block, in the same order as getDirtySubBlocks.
+     */
+    public long getSurfaceSubBlocks()
+    {
+        return surfaceSubBlocks;
+    }
+
+
+    /**
+     * Sets the sub-blocks that may hold part of the isosurface, for a
+     * generator that knows the rest are all solid or all empty. Samples that
+     * only those other sub-blocks read need only have the right sign. Later
+     * calls to setValue add the sub-blocks that read the changed sample.
+     *
+     * @param surfaceSubBlocks
+     *            one bit per sub-block, in the same order as
+     *            getDirtySubBlocks.
+     */
+    public void setSurfaceSubBlocks(long surfaceSubBlocks)
+    {
+        this.surfaceSubBlocks = surfaceSubBlocks;
+    }
+
+
+    /**
+     * Gets the sub-blocks with a cell that reads samples at a coordinate
+     * along one axis, counting the central differences for its normals.
+     * ANDing the results for x, y and z gives the sub-blocks that read the
+     * sample at (x, y, z).
+     *
+     * @param axis
+     *            0, 1 or 2 for x, y or z.
+     * @param sample
+     *            the coordinate, from -APRON to SIZE + APRON.
+     * @return one bit per sub-block, in the same order as getDirtySubBlocks.
+     */
+    public static long getReadingSubBlocks(int axis, int sample)
+    {
+        return SUB_BLOCK_BITS[axis][AXIS_SUB_BLOCKS[sample + APRON]];
+    }
+
+
+    /**
+     * Hands a new mesh to Rajawali.
+     */
+    private void setMesh(MeshData mesh)
+    {
+        this.mesh = mesh;
+        setData(
+            mesh.getVertices(),
+            mesh.getNormals(),
+            mesh.getTextureCoords(),
+            mesh.getColors(),
+            mesh.getIndices());
+        setVisible(true);
+    }
+
+
+    /**
+     * Forgets the mesh and hides whatever was last drawn, for when the
+     * Chunk no longer has an isosurface.
+     */
+    private void clearMesh()
+    {
+        mesh = null;
+        setVisible(false);
+    }
+
+
+    /**
+     * Gets the mesh made by the last call to tessellate.
+     *
+     * @return the MeshData, or null if this Chunk has no isosurface.
+     */
+    public MeshData getMeshData()
+    {
+        return mesh;
+    }
+
 }
@@ -1,36 +1,318 @@
 package com.wajawinc.spaceexploration.universe;
 
-import java.util.concurrent.LinkedBlockingQueue;
 import com.wajawinc.spaceexploration.SpaceExplorationRenderer;
-import java.util.concurrent.BlockingQueue;
-import java.util.concurrent.RejectedExecutionHandler;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.PriorityBlockingQueue;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import rajawali.math.Number3D;
 
+// -------------------------------------------------------------------------
+/**
+ * Generates chunks on one worker thread per core. Each chunk goes through
+ * two stages, generating its values and then tessellating them, which run
+ * as separate tasks so that one chunk can be tessellated while others are
+ * being generated. Workers always take a waiting tessellation before a new
+ * generation, so generated chunks are meshed and their values freed as soon
+ * as a worker is free, instead of piling up behind the rest of the planet.
+ * Otherwise the chunks nearest the viewpoint and in front of it go first,
+ * and waiting chunks are put back in order whenever the viewpoint moves.
+ * Chunks that are no longer wanted can be cancelled.
+ */
 public class ChunkGeneratorExecutor
     extends ThreadPoolExecutor
 {
-    private static final int CORE_POOL_SIZE = 1;
-    private static final int MAXIMUM_POOL_SIZE = 1;
+    private static final int POOL_SIZE = Runtime.getRuntime().availableProcessors();
     private static final long KEEP_ALIVE_TIME = 1000;
     private static final TimeUnit KEEP_ALIVE_TIME_UNIT = TimeUnit.MILLISECONDS;
 
+    /* The stages of a chunk, in the order workers prefer them */
+    private static final int TESSELLATE = 0;
+    private static final int GENERATE = 1;
+
+    /*
+     * Chunks whose centers are more than acos(VIEW_CONE_COS) off the view
+     * direction count as this many times farther away than they are.
+     * Together with the chunk's radius, this roughly covers the frustum of
+     * a 45 degree camera on a wide screen.
+     */
+    private static final float VIEW_CONE_COS = 0.6f;
+    private static final float OUT_OF_VIEW_PENALTY = 4;
+    private static final float CHUNK_RADIUS = Chunk.SIZE * 0.87f;
+
     private SpaceExplorationRenderer renderer;
 
+    /* Orders tasks of the same stage and priority first come, first served */
+    private final AtomicLong sequence = new AtomicLong();
+
+    /* Every task that is waiting or running */
+    private final Set<ChunkTask> pending =
+        Collections.newSetFromMap(new ConcurrentHashMap<ChunkTask, Boolean>());
+
+    /* Held while setting a cancelled flag and while queuing a chunk */
+    private final Object cancelLock = new Object();
+
+    private volatile Number3D viewpoint;
+    private volatile Number3D viewDirection;
+
     public ChunkGeneratorExecutor(SpaceExplorationRenderer renderer) {
-        super(CORE_POOL_SIZE, MAXIMUM_POOL_SIZE, KEEP_ALIVE_TIME, KEEP_ALIVE_TIME_UNIT, new LinkedBlockingQueue<Runnable>());
+        super(POOL_SIZE, POOL_SIZE, KEEP_ALIVE_TIME, KEEP_ALIVE_TIME_UNIT, new PriorityBlockingQueue<Runnable>(), new WorkerFactory());
         this.renderer = renderer;
     }
 
     public void generateChunk(final Planet planet, final Number3D chunkLocation) {
-        this.execute(new Runnable() {
-            public void run()
+        submitTask(new ChunkTask(GENERATE, planet, chunkLocation) {
+            @Override
+            void runStage()
             {
-                planet.generateChunk(chunkLocation);
+                final ChunkTask generation = this;
+                final Chunk chunk = planet.createChunk(chunkLocation);
+                if (chunk == null)
+                {
+                    return;
+                }
+                ChunkTask tessellation =
+                    new ChunkTask(TESSELLATE, planet, chunkLocation) {
+                        @Override
+                        void runStage()
+                        {
+                            if (!chunk.tessellate())
+                            {
+                                return;
+                            }
+                            // Checked under the lock that cancel takes, so a
+                            // chunk is never queued after either stage's
+                            // cancel has returned.
+                            synchronized (cancelLock)
+                            {
+                                if (!cancelled && !generation.cancelled)
+                                {
+                                    planet.queueChunk(chunk);
+                                }
+                            }
+                        }
+                    };
+                submitTask(tessellation);
+                // Checked after submitting, so a cancel that ran meanwhile
+                // either sees the new task or is seen here.
+                if (cancelled)
+                {
+                    cancel(tessellation);
+                }
             }
         });
     }
 
+
+    /**
+     * Sets where chunks are being looked at from, and puts the chunks that
+     * are waiting back in order for it.
+     *
+     * @param position
+     *            the viewpoint, in the same coordinates as the chunk
+     *            locations, or null to build chunks in the order they were
+     *            asked for.
+     * @param direction
+     *            the direction that the viewpoint looks in, or null if
+     *            chunks on every side are as important.
+     */
+    public void setViewpoint(Number3D position, Number3D direction)
+    {
+        viewpoint = position == null ? null : new Number3D(position);
+        if (direction == null || direction.length() == 0)
+        {
+            viewDirection = null;
+        }
+        else
+        {
+            viewDirection = new Number3D(direction);
+            viewDirection.normalize();
+        }
+        reorder();
+    }
+
+
+    /**
+     * Cancels a chunk that has not been queued on its planet yet. A chunk
+     * that is already being generated or tessellated is finished but never
+     * queued, so once this returns the chunk is either already in the
+     * planet's getChunkLocations or never will be.
+     *
+     * @param planet
+     *            the chunk's planet.
+     * @param chunkLocation
+     *            the location passed to generateChunk.
+     */
+    public void cancelChunk(Planet planet, Number3D chunkLocation)
+    {
+        for (ChunkTask task : pending)
+        {
+            if (task.planet == planet && task.location.x == chunkLocation.x
+                && task.location.y == chunkLocation.y
+                && task.location.z == chunkLocation.z)
+            {
+                cancel(task);
+            }
+        }
+    }
+
+
+    /**
+     * Cancels every chunk of a planet that has not been queued on it yet, in
+     * the same way as cancelChunk.
+     *
+     * @param planet
+     *            the planet.
+     */
+    public void cancelPlanet(Planet planet)
+    {
+        for (ChunkTask task : pending)
+        {
+            if (task.planet == planet)
+            {
+                cancel(task);
+            }
+        }
+    }
+
+
+    private void submitTask(ChunkTask task)
+    {
+        pending.add(task);
+        execute(task);
+    }
+
+
+    private void cancel(ChunkTask task)
+    {
+        synchronized (cancelLock)
+        {
+            task.cancelled = true;
+        }
+        getQueue().remove(task);
+        pending.remove(task);
+    }
+
+
+    /*
+     * The priority queue only orders tasks as they go in, so every waiting
+     * task is taken out and put back in with its new priority.
+     */
+    private synchronized void reorder()
+    {
+        List<Runnable> waiting = new ArrayList<Runnable>();
+        getQueue().drainTo(waiting);
+        for (Runnable r : waiting)
+        {
+            ((ChunkTask)r).updatePriority();
+        }
+        getQueue().addAll(waiting);
+    }
+
+
+    /*
+     * How soon a chunk should be built; lower is sooner. It is the distance
+     * from the viewpoint to the chunk, made larger for chunks out of view.
+     */
+    private float getPriority(Number3D location)
+    {
+        Number3D eye = viewpoint;
+        if (eye == null)
+        {
+            return 0;
+        }
+        float dx = location.x + Chunk.SIZE / 2 - eye.x;
+        float dy = location.y + Chunk.SIZE / 2 - eye.y;
+        float dz = location.z + Chunk.SIZE / 2 - eye.z;
+        float distance = (float)Math.sqrt(dx * dx + dy * dy + dz * dz);
+        Number3D direction = viewDirection;
+        if (direction != null && distance > CHUNK_RADIUS
+            && dx * direction.x + dy * direction.y + dz * direction.z
+                < VIEW_CONE_COS * distance - CHUNK_RADIUS)
+        {
+            distance *= OUT_OF_VIEW_PENALTY;
+        }
+        return distance;
+    }
+
+
+    /*
+     * One stage of one chunk. The work queue orders them by stage, then
+     * priority, then age.
+     */
+    private abstract class ChunkTask
+        implements Runnable, Comparable<ChunkTask>
+    {
+        private final int        stage;
+        private final long       order = sequence.getAndIncrement();
+        final Planet             planet;
+        final Number3D           location;
+        private float            priority;
+        volatile boolean         cancelled;
+
+        ChunkTask(int stage, Planet planet, Number3D location) {
+            this.stage = stage;
+            this.planet = planet;
+            this.location = location;
+            updatePriority();
+        }
+
+        void updatePriority()
+        {
+            priority = getPriority(location);
+        }
+
+        public void run()
+        {
+            try
+            {
+                if (!cancelled)
+                {
+                    runStage();
+                }
+            }
+            finally
+            {
+                pending.remove(this);
+            }
+        }
+
+        abstract void runStage();
+
+        public int compareTo(ChunkTask other)
+        {
+            if (stage != other.stage) {
+                return stage < other.stage ? -1 : 1;
+            }
+            if (priority != other.priority) {
+                return priority < other.priority ? -1 : 1;
+            }
+            return order < other.order ? -1 : order == other.order ? 0 : 1;
+        }
+    }
+
+    /*
+     * Makes daemon workers, a notch below normal priority so that the
+     * render thread keeps its frame rate while a planet loads.
+     */
+    private static class WorkerFactory
+        implements ThreadFactory
+    {
+        private final AtomicInteger count = new AtomicInteger();
+
+        public Thread newThread(Runnable r)
+        {
+            Thread thread = new Thread(r, "ChunkGenerator-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            thread.setPriority(Thread.NORM_PRIORITY - 1);
+            return thread;
+        }
+    }
 }
@@ -0,0 +1,209 @@
+package com.wajawinc.spaceexploration.universe;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import rajawali.math.Number3D;
+
+// -------------------------------------------------------------------------
+/**
+ * Keeps the chunks around a moving point loaded. Whenever the point moves
+ * into a new chunk, every chunk within the load radius that has not been
+ * asked for yet is queued, nearest first, and every chunk beyond the unload
+ * radius is cancelled or removed. The unload radius is larger than the load
+ * radius, so going back and forth over a chunk boundary does not load and
+ * unload the same chunks over and over. Only one planet is streamed at a
+ * time; moving to another planet unloads the last one. Call update on the
+ * render thread.
+ */
+public class ChunkStreamer
+{
+    private final ChunkGeneratorExecutor executor;
+    private final int                    unloadRadius;
+    /* The chunk offsets within loadRadius, as x, y, z triples, nearest first */
+    private final int[]                  offsets;
+
+    private Planet                       planet;
+    /* Every chunk asked for and not unloaded, keyed by Planet.getChunkKey */
+    private final Map<Long, Number3D>    requested =
+        new HashMap<Long, Number3D>();
+    private boolean                      centered;
+    private int                          centerX;
+    private int                          centerY;
+    private int                          centerZ;
+    private final Number3D               temp = new Number3D();
+
+
+    /**
+     * Instantiates a new ChunkStreamer.
+     *
+     * @param executor
+     *            the executor that generates the chunks.
+     * @param loadRadius
+     *            how many chunks away from the point's chunk chunks are
+     *            loaded.
+     * @param unloadRadius
+     *            how many chunks away from the point's chunk chunks are
+     *            unloaded; greater than loadRadius.
+     */
+    public ChunkStreamer(
+        ChunkGeneratorExecutor executor,
+        int loadRadius,
+        int unloadRadius)
+    {
+        if (unloadRadius <= loadRadius)
+        {
+            throw new IllegalArgumentException("Unload radius " + unloadRadius
+                + " is not greater than load radius " + loadRadius);
+        }
+        this.executor = executor;
+        this.unloadRadius = unloadRadius;
+        offsets = createOffsets(loadRadius);
+    }
+
+
+    private static int[] createOffsets(int radius)
+    {
+        List<int[]> list = new ArrayList<int[]>();
+        for (int x = -radius; x <= radius; x++)
+        {
+            for (int y = -radius; y <= radius; y++)
+            {
+                for (int z = -radius; z <= radius; z++)
+                {
+                    if (x * x + y * y + z * z <= radius * radius)
+                    {
+                        list.add(new int[] { x, y, z });
+                    }
+                }
+            }
+        }
+        Collections.sort(list, new Comparator<int[]>() {
+            public int compare(int[] a, int[] b)
+            {
+                int lengthA = a[0] * a[0] + a[1] * a[1] + a[2] * a[2];
+                int lengthB = b[0] * b[0] + b[1] * b[1] + b[2] * b[2];
+                return lengthA < lengthB ? -1 : lengthA == lengthB ? 0 : 1;
+            }
+        });
+        int[] offsets = new int[list.size() * 3];
+        for (int i = 0; i < list.size(); i++)
+        {
+            System.arraycopy(list.get(i), 0, offsets, i * 3, 3);
+        }
+        return offsets;
+    }
+
+
+    /**
+     * Loads and unloads chunks for the point's new position. This does
+     * nothing unless the point has moved into another chunk or planet.
+     *
+     * @param newPlanet
+     *            the planet to stream, usually the closest one, or null to
+     *            unload everything.
+     * @param position
+     *            the point, relative to the "center" of the universe.
+     */
+    public void update(Planet newPlanet, Number3D position)
+    {
+        if (newPlanet != planet)
+        {
+            unloadPlanet();
+            planet = newPlanet;
+        }
+        if (planet == null)
+        {
+            return;
+        }
+        planet.getChunkLocation(position, temp);
+        int x = (int)temp.x / Chunk.SIZE;
+        int y = (int)temp.y / Chunk.SIZE;
+        int z = (int)temp.z / Chunk.SIZE;
+        if (centered && x == centerX && y == centerY && z == centerZ)
+        {
+            return;
+        }
+        centered = true;
+        centerX = x;
+        centerY = y;
+        centerZ = z;
+
+        Iterator<Number3D> iterator = requested.values().iterator();
+        while (iterator.hasNext())
+        {
+            Number3D location = iterator.next();
+            if (isBeyondUnloadRadius(location))
+            {
+                executor.cancelChunk(planet, location);
+                planet.removeChunk(location);
+                iterator.remove();
+            }
+        }
+
+        for (int i = 0; i < offsets.length; i += 3)
+        {
+            int chunkX = x + offsets[i];
+            int chunkY = y + offsets[i + 1];
+            int chunkZ = z + offsets[i + 2];
+            Long key = Planet.getChunkKey(chunkX, chunkY, chunkZ);
+            if (!requested.containsKey(key))
+            {
+                Number3D location =
+                    new Number3D(
+                        chunkX * Chunk.SIZE,
+                        chunkY * Chunk.SIZE,
+                        chunkZ * Chunk.SIZE);
+                requested.put(key, location);
+                executor.generateChunk(planet, location);
+            }
+        }
+    }
+
+
+    /**
+     * Cancels and removes every chunk of the planet being streamed. Chunks
+     * still being tessellated are cancelled before the planet's chunks are
+     * listed, so none of them is added to the planet afterwards.
+     */
+    public void unloadPlanet()
+    {
+        if (planet == null)
+        {
+            return;
+        }
+        executor.cancelPlanet(planet);
+        for (Number3D location : planet.getChunkLocations())
+        {
+            planet.removeChunk(location);
+        }
+        requested.clear();
+        centered = false;
+        planet = null;
+    }
+
+
+    /**
+     * Gets how many chunks have been asked for and not unloaded, including
+     * the ones without a surface, which are never added to the planet.
+     *
+     * @return the number of chunks.
+     */
+    public int getRequestedChunkCount()
+    {
+        return requested.size();
+    }
+
+
+    private boolean isBeyondUnloadRadius(Number3D location)
+    {
+        int dx = (int)Math.floor(location.x / Chunk.SIZE) - centerX;
+        int dy = (int)Math.floor(location.y / Chunk.SIZE) - centerY;
+        int dz = (int)Math.floor(location.z / Chunk.SIZE) - centerZ;
+        return dx * dx + dy * dy + dz * dz > unloadRadius * unloadRadius;
+    }
+}
@@ -2,9 +2,14 @@ package com.wajawinc.spaceexploration.universe;
 
 import rajawali.materials.DiffuseMaterial;
 import com.wajawinc.spaceexploration.tessellation.ChunkTessellator;
+import com.wajawinc.spaceexploration.tessellation.ColorRamp;
+import com.wajawinc.spaceexploration.tessellation.LevelOfDetailTessellator;
 import com.wajawinc.spaceexploration.tessellation.MarchingCubesChunkTessellator;
+import com.wajawinc.spaceexploration.universe.generator.ChunkContents;
 import com.wajawinc.spaceexploration.universe.generator.PlanetGenerator;
+import java.util.ArrayList;
 import java.util.LinkedHashMap;
+import java.util.List;
 import rajawali.BaseObject3D;
 import rajawali.lights.DirectionalLight;
 import rajawali.materials.AMaterial;
@@ -19,13 +24,30 @@ import rajawali.math.Number3D;
 public class Planet
     extends BaseObject3D
 {
+    /*
+     * Chunks within this distance of the viewpoint are tessellated at full
+     * resolution, and at half the resolution again each time the distance
+     * doubles.
+     */
+    private static final float             LEVEL_OF_DETAIL_DISTANCE = 256f;
+
     private PlanetGenerator                generator;
 
-    private LinkedHashMap<Number3D, Chunk> chunks;
+    /* Keyed by getChunkKey; also the lock for finishedChunks */
+    private LinkedHashMap<Long, Chunk>     chunks;
+    /* Tessellated chunks waiting for attachChunks, keyed by getChunkKey */
+    private LinkedHashMap<Long, Chunk>     finishedChunks;
 
     private DirectionalLight               light;
     private Number3D                       lightDir = new Number3D();
     private AMaterial                       planetMaterial;
+    private ColorRamp                      colorRamp;
+    private ChunkTessellator               tessellator;
+    /* Whether tessellator was made by this planet from its ColorRamp */
+    private boolean                        defaultTessellator;
+    private Number3D                       viewpoint;
+    /* The share of their triangles kept by distant chunks, or 1 to keep all */
+    private float                          decimationRatio = 1;
 
     /**
      * Instantiates a new Planet object.
@@ -37,10 +59,35 @@ public class Planet
      *            the object that generates the planet's terrain
      */
     public Planet(Number3D center, PlanetGenerator generator)
+    {
+        this(center, generator, null);
+    }
+
+
+    /**
+     * Instantiates a new Planet object that tessellates its chunks with the
+     * given tessellator.
+     *
+     * @param center
+     *            the center of the planet, relative to the "center" of the
+     *            universe.
+     * @param generator
+     *            the object that generates the planet's terrain
+     * @param tessellator
+     *            the object that creates the isosurface from each chunk, or
+     *            null to use Marching Cubes.
+     */
+    public Planet(
+        Number3D center,
+        PlanetGenerator generator,
+        ChunkTessellator tessellator)
     {
         this.setPosition(center);
         this.generator = generator;
-        chunks = new LinkedHashMap<Number3D, Chunk>();
+        colorRamp = ColorRamp.getDefault();
+        setChunkTessellator(tessellator);
+        chunks = new LinkedHashMap<Long, Chunk>();
+        finishedChunks = new LinkedHashMap<Long, Chunk>();
 
         lightDir.x = 1;
         lightDir.y = 0.2f;
@@ -53,14 +100,209 @@ public class Planet
 
     public void generateChunk(Number3D loc)
     {
+        addChunk(createChunk(loc));
+    }
+
+
+    /**
+     * Creates a chunk and fills it from this Planet's generator. This is the
+     * first stage of generateChunk, and can run on any thread at the same
+     * time as other chunks are created or added.
+     *
+     * @param loc
+     *            the location of the chunk relative to the center of the
+     *            planet.
+     * @return the new Chunk, not yet tessellated or added to the Planet, or
+     *         null if the generator can tell that the chunk would have no
+     *         surface.
+     */
+    public Chunk createChunk(Number3D loc)
+    {
+        if (generator.classifyChunk(loc) != ChunkContents.MAYBE_SURFACE)
+        {
+            return null;
+        }
         Chunk c = new Chunk(this, loc);
         //c.generate();
         generator.generateChunk(c, loc);
-        if (!c.tessellate())
+        return c;
+    }
+
+
+    /**
+     * Tessellates a chunk from createChunk and, if it has a surface, queues
+     * it to be added to this Planet by the next call to attachChunks. This is
+     * the second stage of generateChunk, and can run on any thread at the
+     * same time as other chunks are created or added.
+     *
+     * @param c
+     *            the Chunk, or null for none.
+     */
+    public void addChunk(Chunk c)
+    {
+        if (c == null || !c.tessellate())
             return;
-        c.addLight(light);
-        addChild(c);
-        chunks.put(loc, c);
+        queueChunk(c);
+    }
+
+
+    /**
+     * Queues a chunk that has already been tessellated to be added to this
+     * Planet by the next call to attachChunks. This can run on any thread.
+     *
+     * @param c
+     *            the Chunk, with a surface.
+     */
+    public void queueChunk(Chunk c)
+    {
+        synchronized (chunks)
+        {
+            finishedChunks.put(getChunkKey(c.getPosition()), c);
+        }
+    }
+
+
+    /**
+     * Adds the chunks queued by addChunk to this Planet and the scene. The
+     * scene's children are only changed here and in removeChunk, so that
+     * they never change while a frame is drawn. This has to be called on the
+     * render thread.
+     */
+    public void attachChunks()
+    {
+        synchronized (chunks)
+        {
+            for (Chunk c : finishedChunks.values())
+            {
+                c.addLight(light);
+                addChild(c);
+                chunks.put(getChunkKey(c.getPosition()), c);
+            }
+            finishedChunks.clear();
+        }
+    }
+
+
+    /**
+     * Gets the chunk at a location, if it has been added by attachChunks.
+     *
+     * @param location
+     *            the location of the chunk relative to the center of the
+     *            planet.
+     * @return the Chunk, or null if there is none with a surface there.
+     */
+    public Chunk getChunk(Number3D location)
+    {
+        synchronized (chunks)
+        {
+            return chunks.get(getChunkKey(location));
+        }
+    }
+
+
+    /**
+     * Removes the chunk at a location from this Planet and the scene, or from
+     * the chunks waiting for attachChunks, and frees its buffers. This has to
+     * be called on the render thread.
+     *
+     * @param location
+     *            the location of the chunk relative to the center of the
+     *            planet.
+     * @return true if there was a chunk there.
+     */
+    public boolean removeChunk(Number3D location)
+    {
+        Chunk c;
+        synchronized (chunks)
+        {
+            long key = getChunkKey(location);
+            c = chunks.remove(key);
+            if (c != null)
+            {
+                removeChild(c);
+            }
+            else
+            {
+                c = finishedChunks.remove(key);
+                if (c == null)
+                {
+                    return false;
+                }
+            }
+        }
+        c.destroy();
+        return true;
+    }
+
+
+    /**
+     * Gets the locations of every chunk in this Planet, counting the ones
+     * waiting for attachChunks.
+     *
+     * @return a new list of the locations, relative to the center of the
+     *         planet.
+     */
+    public List<Number3D> getChunkLocations()
+    {
+        synchronized (chunks)
+        {
+            List<Number3D> locations =
+                new ArrayList<Number3D>(chunks.size() + finishedChunks.size());
+            for (Chunk c : chunks.values())
+            {
+                locations.add(c.getPosition());
+            }
+            for (Chunk c : finishedChunks.values())
+            {
+                locations.add(c.getPosition());
+            }
+            return locations;
+        }
+    }
+
+
+    /**
+     * Finds the chunk that a point lies in.
+     *
+     * @param position
+     *            the point, relative to the "center" of the universe.
+     * @param chunkLocation
+     *            set to the location of the chunk that the point lies in,
+     *            relative to the center of the planet.
+     */
+    public void getChunkLocation(Number3D position, Number3D chunkLocation)
+    {
+        Number3D center = getPosition();
+        chunkLocation.x =
+            (float)Math.floor((position.x - center.x) / Chunk.SIZE) * Chunk.SIZE;
+        chunkLocation.y =
+            (float)Math.floor((position.y - center.y) / Chunk.SIZE) * Chunk.SIZE;
+        chunkLocation.z =
+            (float)Math.floor((position.z - center.z) / Chunk.SIZE) * Chunk.SIZE;
+    }
+
+
+    /**
+     * Packs a chunk location into a key that is the same for equal
+     * locations, as Number3D has no value equality.
+     */
+    static long getChunkKey(Number3D location)
+    {
+        return getChunkKey(
+            (int)Math.floor(location.x / Chunk.SIZE),
+            (int)Math.floor(location.y / Chunk.SIZE),
+            (int)Math.floor(location.z / Chunk.SIZE));
+    }
+
+
+    /**
+     * Packs chunk coordinates, in chunks rather than voxels, into a key. Each
+     * coordinate keeps 21 bits.
+     */
+    static long getChunkKey(int chunkX, int chunkY, int chunkZ)
+    {
+        return ((long)(chunkX & 0x1FFFFF) << 42)
+            | ((long)(chunkY & 0x1FFFFF) << 21) | (chunkZ & 0x1FFFFF);
     }
 
     public void update(float fps)
@@ -85,13 +327,177 @@ public class Planet
     }
 
 
+    /**
+     * Gets the colors given to this Planet's terrain.
+     *
+     * @return the ColorRamp object.
+     */
+    public ColorRamp getColorRamp()
+    {
+        return colorRamp;
+    }
+
+
+    /**
+     * Sets the colors given to this Planet's terrain. Only chunks tessellated
+     * afterwards are affected. A tessellator given to setChunkTessellator
+     * keeps its own colors.
+     *
+     * @param colorRamp
+     *            the new ColorRamp.
+     */
+    public void setColorRamp(ColorRamp colorRamp)
+    {
+        this.colorRamp = colorRamp;
+        if (defaultTessellator)
+        {
+            tessellator = createDefaultTessellator();
+        }
+    }
+
+
+    /**
+     * Gets the point, relative to the center of the planet, that levels of
+     * detail are chosen from.
+     *
+     * @return the viewpoint, or null if every chunk is tessellated at full
+     *         resolution.
+     */
+    public Number3D getViewpoint()
+    {
+        return viewpoint;
+    }
+
+
+    /**
+     * Sets the point, relative to the center of the planet, that levels of
+     * detail are chosen from. Only chunks tessellated afterwards are
+     * affected.
+     *
+     * @param viewpoint
+     *            the new viewpoint, or null to tessellate every chunk at full
+     *            resolution.
+     */
+    public void setViewpoint(Number3D viewpoint)
+    {
+        this.viewpoint = viewpoint;
+    }
+
+
+    public float getDecimationRatio()
+    {
+        return decimationRatio;
+    }
+
+
+    /**
+     * Sets the share of their triangles that chunks beyond full resolution
+     * distance of the viewpoint keep after tessellation. Only chunks
+     * tessellated afterwards are affected.
+     *
+     * @param decimationRatio
+     *            a number from 0 to 1, where 1 turns decimation off.
+     */
+    public void setDecimationRatio(float decimationRatio)
+    {
+        this.decimationRatio = decimationRatio;
+    }
+
+
+    /**
+     * Chooses how many triangles a chunk's mesh should be cut down to, based
+     * on how far it is from the viewpoint.
+     *
+     * @param chunkLocation
+     *            the location of the chunk relative to the center of the
+     *            planet.
+     * @param triangles
+     *            the number of triangles the chunk was tessellated with.
+     * @return the triangle budget, which is triangles if the chunk should be
+     *         left as it is.
+     */
+    public int getTriangleBudget(Number3D chunkLocation, int triangles)
+    {
+        if (decimationRatio >= 1 || getLevelOfDetail(chunkLocation) == 0)
+        {
+            return triangles;
+        }
+        return (int)(triangles * decimationRatio);
+    }
+
+
+    /**
+     * Chooses how finely to tessellate a chunk, based on how far it is from
+     * the viewpoint.
+     *
+     * @param chunkLocation
+     *            the location of the chunk relative to the center of the
+     *            planet.
+     * @return 0 for full resolution, up to
+     *         LevelOfDetailTessellator.MAX_LEVEL_OF_DETAIL.
+     */
+    public int getLevelOfDetail(Number3D chunkLocation)
+    {
+        if (viewpoint == null)
+        {
+            return 0;
+        }
+        float dx = chunkLocation.x + Chunk.SIZE / 2 - viewpoint.x;
+        float dy = chunkLocation.y + Chunk.SIZE / 2 - viewpoint.y;
+        float dz = chunkLocation.z + Chunk.SIZE / 2 - viewpoint.z;
+        float distance = (float)Math.sqrt(dx * dx + dy * dy + dz * dz);
+        int levelOfDetail = 0;
+        while (levelOfDetail < LevelOfDetailTessellator.MAX_LEVEL_OF_DETAIL
+            && distance > LEVEL_OF_DETAIL_DISTANCE * (1 << levelOfDetail))
+        {
+            levelOfDetail++;
+        }
+        return levelOfDetail;
+    }
+
+
     /**
      * Gets the object that creates the isosurface from each chunk's voxel data.
+     * The same tessellator is shared by every chunk and every worker thread.
      *
      * @return the ChunkTessellator object.
      */
     public ChunkTessellator getChunkTessellator()
     {
-        return new MarchingCubesChunkTessellator();
+        return tessellator;
+    }
+
+
+    /**
+     * Sets the object that creates the isosurface from each chunk's voxel data.
+     * Only chunks tessellated afterwards are affected.
+     *
+     * @param tessellator
+     *            the new ChunkTessellator, which must be safe to share between
+     *            threads, or null to use Marching Cubes with this Planet's
+     *            ColorRamp.
+     */
+    public void setChunkTessellator(ChunkTessellator tessellator)
+    {
+        defaultTessellator = tessellator == null;
+        if (defaultTessellator)
+        {
+            tessellator = createDefaultTessellator();
+        }
+        this.tessellator = tessellator;
+    }
+
+
+    /**
+     * Makes the tessellator used when none is given: Marching Cubes with
+     * shared vertices and gradient normals, colored by this Planet's
+     * ColorRamp.
+     */
+    private ChunkTessellator createDefaultTessellator()
+    {
+        return new MarchingCubesChunkTessellator(
+            true,
+            colorRamp,
+            true);
     }
 }
@@ -27,4 +27,22 @@ public class Universe
         return planets;
     }
 
+    /**
+     * Finds the planet whose center is closest to a point.
+     * @param position the point
+     * @return the closest Planet, or null if there are none
+     */
+    public Planet getClosestPlanet(Number3D position) {
+        Planet closest = null;
+        float closestDistance = Float.MAX_VALUE;
+        for (Planet planet : planets) {
+            float distance = planet.getPosition().distanceTo(position);
+            if (distance < closestDistance) {
+                closest = planet;
+                closestDistance = distance;
+            }
+        }
+        return closest;
+    }
+
 }
@@ -0,0 +1,20 @@
+package com.wajawinc.spaceexploration.universe.generator;
+
+/**
+ * What a planet generator can promise about a chunk before generating it.
+ */
+public enum ChunkContents
+{
+    /**
+     * Every sample is empty (0 or less), so the chunk has no surface.
+     */
+    EMPTY,
+    /**
+     * Every sample is solid (more than 0), so the chunk has no surface.
+     */
+    SOLID,
+    /**
+     * The chunk might have a surface, so it has to be generated to find out.
+     */
+    MAYBE_SURFACE
+}
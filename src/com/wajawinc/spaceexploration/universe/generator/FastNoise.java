@@ -1,9 +1,39 @@
 package com.wajawinc.spaceexploration.universe.generator;
 
+import java.util.Random;
 
+/**
+ * Ken Perlin's improved noise. Each instance has its own permutation table,
+ * which is never changed after construction, so an instance can be sampled
+ * from any number of threads at once without locking.
+ */
 public class FastNoise
 {
-    static public double noise(double x, double y, double z) {
+    private final int p[] = new int[512];
+
+    /**
+     * Creates noise with Ken Perlin's reference permutation.
+     */
+    public FastNoise() {
+        for (int i=0; i < 256 ; i++) p[256+i] = p[i] = permutation[i];
+    }
+
+    /**
+     * Creates noise with a permutation shuffled from a seed, so that
+     * different seeds give unrelated noise.
+     * @param seed the seed
+     */
+    public FastNoise(long seed) {
+        Random random = new Random(seed);
+        for (int i=0; i < 256 ; i++) p[i] = i;
+        for (int i=255; i > 0 ; i--) {
+            int j = random.nextInt(i + 1);
+            int swap = p[i]; p[i] = p[j]; p[j] = swap;
+        }
+        for (int i=0; i < 256 ; i++) p[256+i] = p[i];
+    }
+
+    public double noise(double x, double y, double z) {
         int X = (int)Math.floor(x) & 255,                  // FIND UNIT CUBE THAT
             Y = (int)Math.floor(y) & 255,                  // CONTAINS POINT.
             Z = (int)Math.floor(z) & 255;
@@ -33,7 +63,7 @@ public class FastNoise
                v = h<4 ? y : h==12||h==14 ? x : z;
         return ((h&1) == 0 ? u : -u) + ((h&2) == 0 ? v : -v);
      }
-     static final int p[] = new int[512], permutation[] = { 151,160,137,91,90,15,
+     private static final int permutation[] = { 151,160,137,91,90,15,
      131,13,201,95,96,53,194,233,7,225,140,36,103,30,69,142,8,99,37,240,21,10,23,
      190, 6,148,247,120,234,75,0,26,197,62,94,252,219,203,117,35,11,32,57,177,33,
      88,237,149,56,87,174,20,125,136,171,168, 68,175,74,165,71,134,139,48,27,166,
@@ -47,5 +77,4 @@ public class FastNoise
      49,192,214, 31,181,199,106,157,184, 84,204,176,115,121,50,45,127, 4,150,254,
      138,236,205,93,222,114,67,29,24,72,243,141,128,195,78,66,215,61,156,180
      };
-     static { for (int i=0; i < 256 ; i++) p[256+i] = p[i] = permutation[i]; }
-}
\ No newline at end of file
+}
@@ -0,0 +1,207 @@
+package com.wajawinc.spaceexploration.universe.generator;
+
+import java.util.Arrays;
+
+/**
+ * Holds the lattice values that neighbouring chunks share, so that each is
+ * computed once. Every entry knows how many chunks use its point and is
+ * dropped after the last of them has read it. The map is split into
+ * stripes, each an open addressed table of primitives with its own lock,
+ * so threads generating different chunks rarely wait on each other.
+ *
+ * Chunks that are never generated, such as those the generator can tell
+ * are empty, leave their points' entries behind. A stripe that fills up
+ * is cleared, which only costs the values being computed again.
+ */
+class LatticeCache
+{
+    private static final int  STRIPES        = 16;
+    /* Entries per stripe; the table is twice as long */
+    private static final int  STRIPE_ENTRIES = 1024;
+    private static final int  STRIPE_SLOTS   = STRIPE_ENTRIES * 2;
+    /* Packed keys never have the sign bit set */
+    private static final long EMPTY          = Long.MIN_VALUE;
+
+    private final Stripe[]    stripes        = new Stripe[STRIPES];
+
+
+    LatticeCache()
+    {
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new Stripe();
+        }
+    }
+
+
+    /**
+     * Packs lattice coordinates into a key. Each coordinate keeps 21 bits.
+     */
+    static long getKey(int x, int y, int z)
+    {
+        return ((long)(x & 0x1FFFFF) << 42) | ((long)(y & 0x1FFFFF) << 21)
+            | (z & 0x1FFFFF);
+    }
+
+
+    /**
+     * Spreads a key's bits over the whole long; the stripe is picked from the
+     * top bits and the slot from the middle ones.
+     */
+    private static long hash(long key)
+    {
+        return key * 0x9E3779B97F4A7C15L;
+    }
+
+
+    /**
+     * Reads the value at a lattice point for one of the chunks that use it.
+     *
+     * @param key
+     *            the point's key from getKey.
+     * @param values
+     *            where to put the value.
+     * @param index
+     *            the index in values to put it at.
+     * @return true if the value was cached, or false if it has to be
+     *         computed and given to write.
+     */
+    boolean read(long key, float[] values, int index)
+    {
+        long hash = hash(key);
+        Stripe stripe = stripes[(int)(hash >>> 60) & (STRIPES - 1)];
+        synchronized (stripe) {
+            int slot = stripe.find(key, hash);
+            if (stripe.keys[slot] == EMPTY) {
+                return false;
+            }
+            values[index] = stripe.values[slot];
+            stripe.countRead(slot);
+            return true;
+        }
+    }
+
+
+    /**
+     * Stores the value at a lattice point, computed by one of the chunks that
+     * use it. This counts as that chunk's read.
+     *
+     * @param key
+     *            the point's key from getKey.
+     * @param users
+     *            the number of chunks that use the point, at least 2.
+     * @param value
+     *            the value.
+     */
+    void write(long key, int users, float value)
+    {
+        long hash = hash(key);
+        Stripe stripe = stripes[(int)(hash >>> 60) & (STRIPES - 1)];
+        synchronized (stripe) {
+            int slot = stripe.find(key, hash);
+            if (stripe.keys[slot] != EMPTY) {
+                /* Another chunk computed it at the same time */
+                stripe.countRead(slot);
+                return;
+            }
+            if (stripe.size == STRIPE_ENTRIES) {
+                stripe.clear();
+                slot = stripe.find(key, hash);
+            }
+            stripe.keys[slot] = key;
+            stripe.values[slot] = value;
+            stripe.reads[slot] = 1;
+            stripe.users[slot] = (byte)users;
+            stripe.size++;
+        }
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * One lock's share of the entries, in a table with linear probing.
+     */
+    private static class Stripe
+    {
+        final long[]  keys   = new long[STRIPE_SLOTS];
+        final float[] values = new float[STRIPE_SLOTS];
+        final byte[]  reads  = new byte[STRIPE_SLOTS];
+        final byte[]  users  = new byte[STRIPE_SLOTS];
+        int           size;
+
+
+        Stripe()
+        {
+            Arrays.fill(keys, EMPTY);
+        }
+
+
+        private static int getHome(long hash)
+        {
+            return (int)(hash >>> 24) & (STRIPE_SLOTS - 1);
+        }
+
+
+        /**
+         * Finds the slot holding a key, or the empty slot where it would go.
+         */
+        int find(long key, long hash)
+        {
+            int slot = getHome(hash);
+            while (keys[slot] != EMPTY && keys[slot] != key) {
+                slot = (slot + 1) & (STRIPE_SLOTS - 1);
+            }
+            return slot;
+        }
+
+
+        /**
+         * Counts a read of the entry in a slot, and removes the entry once
+         * every chunk that uses it has read it.
+         */
+        void countRead(int slot)
+        {
+            if (++reads[slot] >= users[slot]) {
+                remove(slot);
+            }
+        }
+
+
+        void clear()
+        {
+            Arrays.fill(keys, EMPTY);
+            size = 0;
+        }
+
+
+        /**
+         * Empties a slot, moving back any later entries of its probe run
+         * that would no longer be found past the gap.
+         */
+        private void remove(int slot)
+        {
+            size--;
+            int gap = slot;
+            int next = slot;
+            while (true) {
+                keys[gap] = EMPTY;
+                long key;
+                int home;
+                do {
+                    next = (next + 1) & (STRIPE_SLOTS - 1);
+                    key = keys[next];
+                    if (key == EMPTY) {
+                        return;
+                    }
+                    home = getHome(hash(key));
+                } while (gap <= next
+                    ? gap < home && home <= next
+                    : gap < home || home <= next);
+                keys[gap] = key;
+                values[gap] = values[next];
+                reads[gap] = reads[next];
+                users[gap] = users[next];
+                gap = next;
+            }
+        }
+    }
+}
@@ -0,0 +1,312 @@
+package com.wajawinc.spaceexploration.universe.generator;
+
+import com.wajawinc.spaceexploration.universe.Chunk;
+import com.wajawinc.spaceexploration.universe.generator.module.Grid;
+import com.wajawinc.spaceexploration.universe.generator.module.Module;
+import com.wajawinc.spaceexploration.universe.generator.module.ModuleContext;
+import rajawali.math.Number3D;
+
+/**
+ * Generates a planet from a graph of Modules, whose root gives the density
+ * at each point; positive is solid. The graph is evaluated once per chunk
+ * over a coarse lattice, every SAMPLE_RATE voxels, and the chunk is filled
+ * by interpolating the lattice wherever a lattice cell's corners differ in
+ * sign. Lattice points on the borders between chunks are evaluated once and
+ * shared through a LatticeCache. Scratch space is kept per thread, so any
+ * number of threads can generate chunks at once.
+ */
+public class ModulePlanetGenerator
+    implements PlanetGenerator
+{
+    /*
+     * The distance between lattice points that the graph is evaluated at,
+     * which makes each lattice cell one of the chunk's sub-blocks
+     */
+    private static final int SAMPLE_RATE = Chunk.SUB_BLOCK_SIZE;
+    /* Lattice points needed past each face to cover Chunk.APRON */
+    private static final int LATTICE_APRON = 1;
+    private static final int LATTICE_SIZE = Chunk.SIZE/SAMPLE_RATE+1+2*LATTICE_APRON;
+
+    /*
+     * For each sample coordinate along an axis, plus Chunk.APRON, the lattice
+     * index below it and how far it is past that index. The same for every
+     * axis and every chunk.
+     */
+    private static final int[]   LATTICE_INDEX = new int[Chunk.SIZE+1+2*Chunk.APRON];
+    private static final float[] LATTICE_DISTANCE = new float[LATTICE_INDEX.length];
+
+    static {
+        for (int s = -Chunk.APRON; s <= Chunk.SIZE + Chunk.APRON; s++) {
+            int index = (int) Math.floor((float) s / SAMPLE_RATE);
+            LATTICE_DISTANCE[s+Chunk.APRON] = (float) (s - index * SAMPLE_RATE) / SAMPLE_RATE;
+            LATTICE_INDEX[s+Chunk.APRON] = index + LATTICE_APRON;
+        }
+    }
+
+    /*
+     * For each lattice index along an axis, the number of chunks along that
+     * axis whose lattices include the point. The product over the three axes
+     * is how many chunks share the point.
+     */
+    private static final int[] LATTICE_USERS = new int[LATTICE_SIZE];
+
+    static {
+        int cells = Chunk.SIZE/SAMPLE_RATE;
+        for (int i = 0; i < LATTICE_SIZE; i++) {
+            int offset = i - LATTICE_APRON;
+            for (int chunk = -LATTICE_SIZE/cells - 1; chunk <= LATTICE_SIZE/cells + 1; chunk++) {
+                int local = offset - chunk*cells;
+                if (local >= -LATTICE_APRON && local <= cells + LATTICE_APRON) {
+                    LATTICE_USERS[i]++;
+                }
+            }
+        }
+    }
+
+    /*
+     * Roughly how many points of a regular grid cost as much to evaluate as
+     * one scattered point, since noise sources fill regular grids in one
+     * batched call
+     */
+    private static final int SCATTERED_POINT_COST = 3;
+
+    /*
+     * How far from 0 a bound on the graph's values has to be before the
+     * chunk is taken to be all one sign. It covers the rounding in the
+     * graph and in the interpolation, which the range bounds do not.
+     */
+    private static final float RANGE_MARGIN = 1e-4f;
+
+    private final Module root;
+
+    /* The lattice points shared between neighbouring chunks */
+    private final LatticeCache cache = new LatticeCache();
+
+    private final ThreadLocal<Evaluation> evaluations =
+        new ThreadLocal<Evaluation>() {
+            @Override
+            protected Evaluation initialValue()
+            {
+                return new Evaluation();
+            }
+        };
+
+    /**
+     * Creates a generator for the planet that a module graph describes.
+     * @param root the module that gives the density at each point
+     */
+    public ModulePlanetGenerator(Module root)
+    {
+        this.root = root;
+    }
+
+    public void generateChunk(Chunk c, Number3D loc)
+    {
+        Evaluation e = evaluations.get();
+        e.grid.setRegular(
+            (int) loc.x - SAMPLE_RATE*LATTICE_APRON,
+            (int) loc.y - SAMPLE_RATE*LATTICE_APRON,
+            (int) loc.z - SAMPLE_RATE*LATTICE_APRON,
+            SAMPLE_RATE,
+            LATTICE_SIZE,
+            LATTICE_SIZE,
+            LATTICE_SIZE);
+        evaluateLattice(e, (int) loc.x/SAMPLE_RATE - LATTICE_APRON, (int) loc.y/SAMPLE_RATE - LATTICE_APRON, (int) loc.z/SAMPLE_RATE - LATTICE_APRON);
+        float[] lattice = e.lattice;
+        float[] column = e.column;
+        long surface = getSurfaceCells(lattice);
+        /*
+         * Only the samples that a surface cell reads are interpolated. The
+         * rest lie in cells that are all one sign, so they just take the
+         * lattice value below them. It has the right sign, and keeps a later
+         * setValue from meshing against a density of exactly 0.
+         */
+        for (int x = -Chunk.APRON; x <= Chunk.SIZE + Chunk.APRON; x++) {
+            int x1i = LATTICE_INDEX[x+Chunk.APRON];
+            int x2i = x1i + 1;
+            float xd = LATTICE_DISTANCE[x+Chunk.APRON];
+            long xCells = surface & Chunk.getReadingSubBlocks(0, x);
+            for (int y = -Chunk.APRON; y <= Chunk.SIZE + Chunk.APRON; y++) {
+                int y1i = LATTICE_INDEX[y+Chunk.APRON];
+                int y2i = y1i + 1;
+                float yd = LATTICE_DISTANCE[y+Chunk.APRON];
+                long columnCells = xCells & Chunk.getReadingSubBlocks(1, y);
+                int i11 = (x1i*LATTICE_SIZE + y1i)*LATTICE_SIZE;
+                if (columnCells == 0) {
+                    for (int z = -Chunk.APRON; z <= Chunk.SIZE + Chunk.APRON; z++) {
+                        c.setValue(x, y, z, lattice[i11+LATTICE_INDEX[z+Chunk.APRON]]);
+                    }
+                    continue;
+                }
+                float w11 = (1-xd)*(1-yd);
+                float w21 = xd*(1-yd);
+                float w12 = (1-xd)*yd;
+                float w22 = xd*yd;
+                int i21 = (x2i*LATTICE_SIZE + y1i)*LATTICE_SIZE;
+                int i12 = (x1i*LATTICE_SIZE + y2i)*LATTICE_SIZE;
+                int i22 = (x2i*LATTICE_SIZE + y2i)*LATTICE_SIZE;
+                //The x-y interpolated value at each lattice z of this column
+                for (int z = 0; z < LATTICE_SIZE; z++) {
+                    column[z] = lattice[i11+z]*w11 + lattice[i21+z]*w21 + lattice[i12+z]*w12 + lattice[i22+z]*w22;
+                }
+                for (int z = -Chunk.APRON; z <= Chunk.SIZE + Chunk.APRON; z++) {
+                    int z1i = LATTICE_INDEX[z+Chunk.APRON];
+                    if ((columnCells & Chunk.getReadingSubBlocks(2, z)) != 0) {
+                        float zd = LATTICE_DISTANCE[z+Chunk.APRON];
+                        c.setValue(x, y, z, column[z1i]*(1-zd) + column[z1i+1]*zd);
+                    }
+                    else {
+                        c.setValue(x, y, z, lattice[i11+z1i]);
+                    }
+                }
+            }
+        }
+        c.setSurfaceSubBlocks(surface);
+    }
+
+    /**
+     * Fills e.lattice for the lattice in e.grid, taking the points that
+     * neighbouring chunks share from the cache. The points that are not
+     * cached are evaluated and given to the cache for the other chunks.
+     * @param e the scratch space, with e.grid set to the chunk's lattice
+     * @param x the lattice coordinate of the first point, in points from
+     * the planet's center
+     * @param y the lattice coordinate of the first point
+     * @param z the lattice coordinate of the first point
+     */
+    private void evaluateLattice(Evaluation e, int x, int y, int z)
+    {
+        float[] lattice = e.lattice;
+        int[] missing = e.missing;
+        int missingCount = 0;
+        int[] low = { LATTICE_SIZE, LATTICE_SIZE, LATTICE_SIZE };
+        int[] high = { -1, -1, -1 };
+        int index = 0;
+        for (int i = 0; i < LATTICE_SIZE; i++) {
+            for (int j = 0; j < LATTICE_SIZE; j++) {
+                for (int k = 0; k < LATTICE_SIZE; k++, index++) {
+                    if (LATTICE_USERS[i]*LATTICE_USERS[j]*LATTICE_USERS[k] > 1
+                        && cache.read(LatticeCache.getKey(x+i, y+j, z+k), lattice, index)) {
+                        continue;
+                    }
+                    missing[missingCount++] = index;
+                    low[0] = Math.min(low[0], i);
+                    low[1] = Math.min(low[1], j);
+                    low[2] = Math.min(low[2], k);
+                    high[0] = Math.max(high[0], i);
+                    high[1] = Math.max(high[1], j);
+                    high[2] = Math.max(high[2], k);
+                }
+            }
+        }
+        if (missingCount == 0) {
+            return;
+        }
+        /*
+         * The missing points are usually the side of the lattice away from
+         * the chunks already generated, so the regular box around them is
+         * often little bigger than they are.
+         */
+        int countX = high[0] - low[0] + 1;
+        int countY = high[1] - low[1] + 1;
+        int countZ = high[2] - low[2] + 1;
+        float[] values = e.values;
+        boolean box = countX*countY*countZ <= missingCount*SCATTERED_POINT_COST;
+        if (box) {
+            e.subset.setRegular(
+                e.grid.getOriginX() + low[0]*SAMPLE_RATE,
+                e.grid.getOriginY() + low[1]*SAMPLE_RATE,
+                e.grid.getOriginZ() + low[2]*SAMPLE_RATE,
+                SAMPLE_RATE,
+                countX,
+                countY,
+                countZ);
+        }
+        else {
+            e.subset.setPoints(e.grid, missing, missingCount);
+        }
+        root.fill(e.subset, values, e.context);
+        for (int m = 0; m < missingCount; m++) {
+            int i = missing[m]/(LATTICE_SIZE*LATTICE_SIZE);
+            int j = missing[m]/LATTICE_SIZE%LATTICE_SIZE;
+            int k = missing[m]%LATTICE_SIZE;
+            float value = box ? values[((i-low[0])*countY + j-low[1])*countZ + k-low[2]] : values[m];
+            lattice[missing[m]] = value;
+            int users = LATTICE_USERS[i]*LATTICE_USERS[j]*LATTICE_USERS[k];
+            if (users > 1) {
+                cache.write(LatticeCache.getKey(x+i, y+j, z+k), users, value);
+            }
+        }
+    }
+
+    /**
+     * Finds the lattice cells inside the chunk whose corners are not all the
+     * same sign. Every sample is interpolated from the corners of the cell
+     * it is in, so only these cells can hold the surface. The cells are
+     * SAMPLE_RATE wide, the same as the chunk's sub-blocks.
+     * @param lattice the values at the lattice points
+     * @return one bit per cell, in the order of Chunk.getSurfaceSubBlocks
+     */
+    private static long getSurfaceCells(float[] lattice)
+    {
+        int cells = Chunk.SIZE/SAMPLE_RATE;
+        long surface = 0;
+        for (int x = 0; x < cells; x++) {
+            for (int y = 0; y < cells; y++) {
+                for (int z = 0; z < cells; z++) {
+                    int first = ((x+LATTICE_APRON)*LATTICE_SIZE + y+LATTICE_APRON)*LATTICE_SIZE + z+LATTICE_APRON;
+                    boolean solid = lattice[first] > 0;
+                    for (int corner = 1; corner < 8; corner++) {
+                        int i = first + ((corner >> 2)*LATTICE_SIZE + (corner >> 1 & 1))*LATTICE_SIZE + (corner & 1);
+                        if (lattice[i] > 0 != solid) {
+                            surface |= 1L << (x*cells + y)*cells + z;
+                            break;
+                        }
+                    }
+                }
+            }
+        }
+        return surface;
+    }
+
+    /**
+     * Classifies a chunk from the range its module graph can take over the
+     * chunk. Every sample is interpolated from lattice values at points
+     * within the chunk, so it lies within the same range.
+     */
+    public ChunkContents classifyChunk(Number3D loc)
+    {
+        float[] box = { loc.x, loc.y, loc.z, loc.x + Chunk.SIZE, loc.y + Chunk.SIZE, loc.z + Chunk.SIZE };
+        float[] range = new float[2];
+        root.getRange(box, range);
+        if (range[1] <= -RANGE_MARGIN) {
+            return ChunkContents.EMPTY;
+        }
+        if (range[0] >= RANGE_MARGIN) {
+            return ChunkContents.SOLID;
+        }
+        return ChunkContents.MAYBE_SURFACE;
+    }
+
+    public float getValue(int x, int y, int z)
+    {
+        Evaluation e = evaluations.get();
+        e.point.setRegular(x, y, z, 1, 1, 1, 1);
+        root.fill(e.point, e.pointValue, e.context);
+        return e.pointValue[0];
+    }
+
+    /* One thread's scratch space */
+    private static class Evaluation
+    {
+        final ModuleContext context = new ModuleContext();
+        final Grid          grid = new Grid();
+        final float[]       lattice = new float[LATTICE_SIZE*LATTICE_SIZE*LATTICE_SIZE];
+        final float[]       column = new float[LATTICE_SIZE];
+        final int[]         missing = new int[LATTICE_SIZE*LATTICE_SIZE*LATTICE_SIZE];
+        final Grid          subset = new Grid();
+        final float[]       values = new float[LATTICE_SIZE*LATTICE_SIZE*LATTICE_SIZE];
+        final Grid          point = new Grid();
+        final float[]       pointValue = new float[1];
+    }
+}
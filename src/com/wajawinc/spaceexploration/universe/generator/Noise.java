@@ -1,95 +1,156 @@
 package com.wajawinc.spaceexploration.universe.generator;
 
-import java.math.BigInteger;
-import java.security.MessageDigest;
-import java.security.NoSuchAlgorithmException;
-import java.util.Random;
+import java.util.Arrays;
 
+/**
+ * Turbulent value noise. The lattice values are hashed from the seed, so a
+ * Noise holds nothing but its seed and size and never changes after
+ * construction; any number of threads can sample one at once without
+ * locking, and each planet can have its own seed.
+ */
 public class Noise
+    implements NoiseSource
 {
-    private static Random rand = new Random();
-    private float size;
-    private int planetSeed;
-    private float[][][] latticeCache;
-    private boolean cached = false;
-    private int minLatticeCacheX;
-    private int minLatticeCacheY;
-    private int minLatticeCacheZ;
+    private final float size;
+    private final int planetSeed;
 
+    /**
+     * Creates turbulent noise.
+     * @param seed mixed into the hash of every lattice value
+     * @param s the size of the largest octave
+     */
     public Noise(int seed, float s)
     {
         size = s;
         planetSeed = seed;
     }
 
-    public void cacheLatticeValues(int minX, int maxX, int minY, int maxY, int minZ, int maxZ) {
-        cached = false;
-        latticeCache = new float[maxX-minX+1][maxY-minY+1][maxZ-minZ+1];
-        for (int x = 0; x < latticeCache.length; x++) {
-            for (int y =0; y < latticeCache[0].length; y++) {
-                for (int z = 0; z < latticeCache[0][0].length; z++) {
-                    latticeCache[x][y][z]=noise(x+minX,y+minX,z+minZ);
-                }
-            }
-        }
-        minLatticeCacheX = minX;
-        minLatticeCacheY = minY;
-        minLatticeCacheZ = minZ;
-        cached = true;
-    }
-
-    public void clearLatticeCache() {
-        cached = false;
-        latticeCache = null;
-    }
-
     public float getNoiseValue (float x, float y, float z)
     {
         return turb(x, y, z, size);
     }
 
-    private float noise(int x, int y, int z) {
-        if (cached) {
-            if (x >= minLatticeCacheX && x < minLatticeCacheX + latticeCache.length &&
-                y >= minLatticeCacheY && y < minLatticeCacheY + latticeCache[0].length &&
-                z >= minLatticeCacheZ && z < minLatticeCacheZ + latticeCache[0][0].length) {
-                return latticeCache[x-minLatticeCacheX][y-minLatticeCacheY][z-minLatticeCacheZ];
+    /**
+     * Fills a regular grid of noise values in one call. The values are the
+     * same as getNoiseValue gives for each point, but every lattice value an
+     * octave needs is hashed only once however many points share it, and the
+     * interpolation weights are worked out once per row along each axis.
+     * @param values receives the value at (x + i * spacing, y + j * spacing,
+     * z + k * spacing) at index (i * countY + j) * countZ + k
+     * @param x the x coordinate of the first point
+     * @param y the y coordinate of the first point
+     * @param z the z coordinate of the first point
+     * @param spacing the distance between neighbouring points, greater than 0
+     * @param countX the number of points along the x axis
+     * @param countY the number of points along the y axis
+     * @param countZ the number of points along the z axis
+     */
+    public void getNoiseValues(float[] values, float x, float y, float z, float spacing, int countX, int countY, int countZ)
+    {
+        int count = countX * countY * countZ;
+        Arrays.fill(values, 0, count, 0);
+        int[] latticeX = new int[countX * 2];
+        int[] latticeY = new int[countY * 2];
+        int[] latticeZ = new int[countZ * 2];
+        int[] lowX = new int[countX];
+        int[] lowY = new int[countY];
+        int[] lowZ = new int[countZ];
+        float[] disX = new float[countX];
+        float[] disY = new float[countY];
+        float[] disZ = new float[countZ];
+        float[] lattice = new float[count * 8];
+        float octave = size;
+        while (octave >= 1)
+        {
+            int usedX = findLattice(x, spacing, octave, countX, latticeX, lowX, disX);
+            int usedY = findLattice(y, spacing, octave, countY, latticeY, lowY, disY);
+            int usedZ = findLattice(z, spacing, octave, countZ, latticeZ, lowZ, disZ);
+            for (int a = 0; a < usedX; a++) {
+                for (int b = 0; b < usedY; b++) {
+                    for (int c = 0; c < usedZ; c++) {
+                        lattice[(a * usedY + b) * usedZ + c] = noise(latticeX[a], latticeY[b], latticeZ[c]);
+                    }
+                }
+            }
+            int i = 0;
+            for (int a = 0; a < countX; a++) {
+                //Lattice value indices of the lower (2) and upper (1) corners, as in createSmoothValue
+                int x2 = lowX[a] * usedY;
+                int x1 = x2 + usedY;
+                float xDis1 = disX[a];
+                float xDis2 = 1 - xDis1;
+                for (int b = 0; b < countY; b++) {
+                    int x1y1 = (x1 + lowY[b] + 1) * usedZ;
+                    int x2y1 = (x2 + lowY[b] + 1) * usedZ;
+                    int x1y2 = (x1 + lowY[b]) * usedZ;
+                    int x2y2 = (x2 + lowY[b]) * usedZ;
+                    float yDis1 = disY[b];
+                    float yDis2 = 1 - yDis1;
+                    for (int c = 0; c < countZ; c++, i++) {
+                        int z1 = lowZ[c] + 1;
+                        int z2 = lowZ[c];
+                        float zDis1 = disZ[c];
+                        float zDis2 = 1 - zDis1;
+                        float smoothValue = 0;
+                        smoothValue += lattice[x1y1 + z1] * xDis1 * yDis1 * zDis1;
+                        smoothValue += lattice[x2y1 + z1] * xDis2 * yDis1 * zDis1;
+                        smoothValue += lattice[x1y2 + z1] * xDis1 * yDis2 * zDis1;
+                        smoothValue += lattice[x1y1 + z2] * xDis1 * yDis1 * zDis2;
+                        smoothValue += lattice[x2y2 + z1] * xDis2 * yDis2 * zDis1;
+                        smoothValue += lattice[x1y2 + z2] * xDis1 * yDis2 * zDis2;
+                        smoothValue += lattice[x2y1 + z2] * xDis2 * yDis1 * zDis2;
+                        smoothValue += lattice[x2y2 + z2] * xDis2 * yDis2 * zDis2;
+                        values[i] += smoothValue * octave;
+                    }
+                }
             }
+            octave /= 2;
+        }
+        float originalSize = size * 2;
+        for (int i = 0; i < count; i++) {
+            values[i] /= originalSize;
         }
-        /*rand.setSeed(getSeed(x, y, z));
-        return rand.nextInt()/(float)Integer.MAX_VALUE;*/
-        int n = x*331 + y*337 + z*347 + planetSeed;
-        n = (n << 13) ^ n;
-        int nn=(n*(n*n*41333 +53307781)+1376312589)&0x7fffffff;
-        return ((1.0f-(nn/1073741824.0f))+1)/2.0f;
     }
 
     /**
-     * Seed method
-     * @param x
-     * @param y
-     * @param z
-     * @return the seed
+     * Finds the lattice coordinates that one octave needs along one axis of
+     * a grid. Each point needs the coordinate below it and the one below
+     * that, and neighbouring points mostly need the same ones, so each is
+     * listed once, in increasing order.
+     * @param start the coordinate of the first point
+     * @param spacing the distance between points
+     * @param octave the size of the octave
+     * @param count the number of points
+     * @param lattice receives the lattice coordinates that are needed
+     * @param low receives, for each point, the index in lattice of the lower
+     * of its two coordinates; the upper one follows it
+     * @param distance receives, for each point, how far it is past its upper
+     * lattice coordinate
+     * @return the number of lattice coordinates needed
      */
-    private long getSeed(int x, int y, int z)
+    private static int findLattice(float start, float spacing, float octave, int count, int[] lattice, int[] low, float[] distance)
     {
-        //long seed = this.planetSeed;
-        //seed = seed * 31 + x;
-        //seed = seed * 31 + y;
-        //seed = seed * 31 + z;
-        return md5(planetSeed + " " + x + " " + y + " " + z).hashCode();
+        int used = 0;
+        for (int i = 0; i < count; i++) {
+            float coordinate = (start + i * spacing) / octave;
+            int upper = (int)Math.floor(coordinate);
+            distance[i] = coordinate - upper;
+            if (used == 0 || lattice[used - 1] < upper - 1) {
+                lattice[used++] = upper - 1;
+            }
+            if (lattice[used - 1] < upper) {
+                lattice[used++] = upper;
+            }
+            low[i] = used - 2;
+        }
+        return used;
     }
 
-    private static String md5(String s) {
-        MessageDigest digest;
-        try {
-            digest = MessageDigest.getInstance("MD5");
-            digest.update(s.getBytes(), 0, s.length());
-            String hash = new BigInteger(1, digest.digest()).toString(16);
-            return hash;
-        } catch (NoSuchAlgorithmException e) {
-            return s;
-        }
+    private float noise(int x, int y, int z) {
+        int n = x*331 + y*337 + z*347 + planetSeed;
+        n = (n << 13) ^ n;
+        int nn=(n*(n*n*41333 +53307781)+1376312589)&0x7fffffff;
+        return ((1.0f-(nn/1073741824.0f))+1)/2.0f;
     }
 
     /**
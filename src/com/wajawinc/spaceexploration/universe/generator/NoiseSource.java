@@ -0,0 +1,33 @@
+package com.wajawinc.spaceexploration.universe.generator;
+
+/**
+ * A source of turbulent 3D noise for planet generators to shape terrain
+ * from. Values are between 0 and 1. Implementations must be safe to sample
+ * from many threads at once.
+ */
+public interface NoiseSource
+{
+    /**
+     * Gets the noise value at a point.
+     * @param x the x coordinate
+     * @param y the y coordinate
+     * @param z the z coordinate
+     * @return the noise value
+     */
+    public float getNoiseValue(float x, float y, float z);
+
+    /**
+     * Fills a regular grid of noise values in one call, each the same as
+     * getNoiseValue gives for its point.
+     * @param values receives the value at (x + i * spacing, y + j * spacing,
+     * z + k * spacing) at index (i * countY + j) * countZ + k
+     * @param x the x coordinate of the first point
+     * @param y the y coordinate of the first point
+     * @param z the z coordinate of the first point
+     * @param spacing the distance between neighbouring points, greater than 0
+     * @param countX the number of points along the x axis
+     * @param countY the number of points along the y axis
+     * @param countZ the number of points along the z axis
+     */
+    public void getNoiseValues(float[] values, float x, float y, float z, float spacing, int countX, int countY, int countZ);
+}
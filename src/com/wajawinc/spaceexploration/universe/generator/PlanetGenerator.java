@@ -7,4 +7,17 @@ public interface PlanetGenerator
 {
     public void generateChunk(Chunk c, Number3D loc);
     public float getValue(int x, int y, int z);
+
+    /**
+     * Works out, without generating it, whether a chunk is certain to be
+     * all empty or all solid. Either way it has no surface, so callers can
+     * skip generating, storing and tessellating it. This must never answer
+     * EMPTY or SOLID for a chunk that generateChunk would give a surface,
+     * but may answer MAYBE_SURFACE for one it would not.
+     * @param loc the location of the chunk relative to the center of the
+     * planet
+     * @return what the chunk's samples from 0 to Chunk.SIZE on each axis
+     * are certain to be
+     */
+    public ChunkContents classifyChunk(Number3D loc);
 }
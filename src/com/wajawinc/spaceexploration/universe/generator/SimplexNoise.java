@@ -0,0 +1,145 @@
+package com.wajawinc.spaceexploration.universe.generator;
+
+import java.util.Random;
+
+/**
+ * Turbulent 3D simplex noise, in float math throughout. Each octave blends
+ * the 4 corners of the simplex around a point rather than the 8 corners of
+ * a cube, and floors with an integer cast rather than Math.floor, so a
+ * sample costs much less than Noise or FastNoise on phones. The permutation
+ * is shuffled from the seed and never changes after construction, so any
+ * number of threads can sample one at once without locking.
+ */
+public class SimplexNoise
+    implements NoiseSource
+{
+    /* Skew and unskew factors between the cubic and simplex grids */
+    private static final float F3 = 1.0f / 3.0f;
+    private static final float G3 = 1.0f / 6.0f;
+
+    /* The 12 gradients, to the midpoints of a cube's edges */
+    private static final float[] GRADIENTS = {
+        1, 1, 0,  -1, 1, 0,  1, -1, 0,  -1, -1, 0,
+        1, 0, 1,  -1, 0, 1,  1, 0, -1,  -1, 0, -1,
+        0, 1, 1,  0, -1, 1,  0, 1, -1,  0, -1, -1 };
+
+    private final float size;
+    private final int[] perm = new int[512];
+    /* perm, premultiplied into offsets in GRADIENTS */
+    private final int[] gradientOffsets = new int[512];
+
+    /**
+     * Creates turbulent simplex noise.
+     * @param seed the seed that the permutation is shuffled from
+     * @param size the size of the largest octave
+     */
+    public SimplexNoise(int seed, float size)
+    {
+        this.size = size;
+        Random random = new Random(seed);
+        for (int i = 0; i < 256; i++) {
+            perm[i] = i;
+        }
+        for (int i = 255; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int swap = perm[i];
+            perm[i] = perm[j];
+            perm[j] = swap;
+        }
+        for (int i = 0; i < 512; i++) {
+            perm[i] = perm[i & 255];
+            gradientOffsets[i] = perm[i] % 12 * 3;
+        }
+    }
+
+    public float getNoiseValue(float x, float y, float z)
+    {
+        float octave = size;
+        float noiseVal = 0;
+        while (octave >= 1) {
+            float scale = 1 / octave;
+            noiseVal += (simplex(x * scale, y * scale, z * scale) * .5f + .5f) * octave;
+            octave /= 2;
+        }
+        return noiseVal / (size * 2);
+    }
+
+    public void getNoiseValues(float[] values, float x, float y, float z, float spacing, int countX, int countY, int countZ)
+    {
+        int i = 0;
+        for (int a = 0; a < countX; a++) {
+            for (int b = 0; b < countY; b++) {
+                for (int c = 0; c < countZ; c++, i++) {
+                    values[i] = getNoiseValue(x + a * spacing, y + b * spacing, z + c * spacing);
+                }
+            }
+        }
+    }
+
+    /**
+     * Samples one octave of simplex noise.
+     * @param x
+     * @param y
+     * @param z
+     * @return the noise value, from about -1 to 1
+     */
+    private float simplex(float x, float y, float z)
+    {
+        //Skews the point onto the cubic grid to find its simplex cell
+        float s = (x + y + z) * F3;
+        int i = fastFloor(x + s);
+        int j = fastFloor(y + s);
+        int k = fastFloor(z + s);
+        float t = (i + j + k) * G3;
+        float x0 = x - (i - t);
+        float y0 = y - (j - t);
+        float z0 = z - (k - t);
+        //Which of the 6 simplices in the cell the point is in, as the offsets
+        //of its second and third corners. Worked out without branches, which
+        //would be mispredicted about half the time.
+        int xy = x0 >= y0 ? 1 : 0;
+        int yz = y0 >= z0 ? 1 : 0;
+        int xz = x0 >= z0 ? 1 : 0;
+        int i1 = xy & xz;
+        int j1 = (xy ^ 1) & yz;
+        int k1 = (xz | yz) ^ 1;
+        int i2 = xy | xz;
+        int j2 = (xy ^ 1) | yz;
+        int k2 = (xz & yz) ^ 1;
+        float x1 = x0 - i1 + G3;
+        float y1 = y0 - j1 + G3;
+        float z1 = z0 - k1 + G3;
+        float x2 = x0 - i2 + 2 * G3;
+        float y2 = y0 - j2 + 2 * G3;
+        float z2 = z0 - k2 + 2 * G3;
+        float x3 = x0 - 1 + 3 * G3;
+        float y3 = y0 - 1 + 3 * G3;
+        float z3 = z0 - 1 + 3 * G3;
+        int ii = i & 255;
+        int jj = j & 255;
+        int kk = k & 255;
+        float n = 0;
+        n += corner(gradientOffsets[ii + perm[jj + perm[kk]]], x0, y0, z0);
+        n += corner(gradientOffsets[ii + i1 + perm[jj + j1 + perm[kk + k1]]], x1, y1, z1);
+        n += corner(gradientOffsets[ii + i2 + perm[jj + j2 + perm[kk + k2]]], x2, y2, z2);
+        n += corner(gradientOffsets[ii + 1 + perm[jj + 1 + perm[kk + 1]]], x3, y3, z3);
+        return 32 * n;
+    }
+
+    /**
+     * The contribution of one simplex corner, which falls off to 0 at a
+     * distance of sqrt(.6).
+     */
+    private static float corner(int gradient, float x, float y, float z)
+    {
+        float t = Math.max(.6f - x * x - y * y - z * z, 0);
+        t *= t;
+        return t * t * (GRADIENTS[gradient] * x + GRADIENTS[gradient + 1] * y + GRADIENTS[gradient + 2] * z);
+    }
+
+    private static int fastFloor(float value)
+    {
+        int truncated = (int)value;
+        return value < truncated ? truncated - 1 : truncated;
+    }
+}
@@ -15,15 +15,40 @@ public class SpherePlanetGenerator implements PlanetGenerator
         int chunkX = (int) loc.x;
         int chunkY = (int) loc.y;
         int chunkZ = (int) loc.z;
-        for (int x = 0; x <= Chunk.SIZE; x++) {
-            for (int y = 0; y <= Chunk.SIZE; y++) {
-                for (int z = 0; z <= Chunk.SIZE; z++) {
+        for (int x = -Chunk.APRON; x <= Chunk.SIZE + Chunk.APRON; x++) {
+            for (int y = -Chunk.APRON; y <= Chunk.SIZE + Chunk.APRON; y++) {
+                for (int z = -Chunk.APRON; z <= Chunk.SIZE + Chunk.APRON; z++) {
                     c.setValue(x, y, z, getValue(x+chunkX, y+chunkY, z+chunkZ));
                 }
             }
         }
     }
 
+    public ChunkContents classifyChunk(Number3D loc)
+    {
+        float[] nearest = new float[3];
+        float[] farthest = new float[3];
+        float[] low = { loc.x, loc.y, loc.z };
+        for (int i = 0; i < 3; i++) {
+            float high = low[i] + Chunk.SIZE;
+            nearest[i] = Math.max(low[i], Math.min(0, high));
+            farthest[i] = Math.max(Math.abs(low[i]), Math.abs(high));
+        }
+        float min = 64.0f - (float)Math.sqrt(farthest[0]*farthest[0]+farthest[1]*farthest[1]+farthest[2]*farthest[2]);
+        float max = 64.0f - (float)Math.sqrt(nearest[0]*nearest[0]+nearest[1]*nearest[1]+nearest[2]*nearest[2]);
+        /* getValue's solid block */
+        if (low[0] < 64 && low[0] + Chunk.SIZE >= 60 && low[1] + Chunk.SIZE >= 60 && low[2] < 64 && low[2] + Chunk.SIZE >= 60) {
+            max = Math.max(max, 1);
+        }
+        if (max <= 0) {
+            return ChunkContents.EMPTY;
+        }
+        if (min > 0) {
+            return ChunkContents.SOLID;
+        }
+        return ChunkContents.MAYBE_SURFACE;
+    }
+
     public float getValue(int x, int y, int z)
     {
         if (x >= 60 && x < 64 && y >= 60 && z < 64 && z >= 60 && z < 64) {
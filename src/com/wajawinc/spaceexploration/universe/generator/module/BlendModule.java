@@ -0,0 +1,54 @@
+package com.wajawinc.spaceexploration.universe.generator.module;
+
+/**
+ * A weighted sum of two modules.
+ */
+public class BlendModule
+    extends Module
+{
+    private final Module first;
+    private final Module second;
+    private final float  firstWeight;
+    private final float  secondWeight;
+
+    /**
+     * @param first the first module
+     * @param firstWeight what the first module's values are multiplied by
+     * @param second the second module
+     * @param secondWeight what the second module's values are multiplied by
+     */
+    public BlendModule(Module first, float firstWeight, Module second, float secondWeight)
+    {
+        this.first = first;
+        this.second = second;
+        this.firstWeight = firstWeight;
+        this.secondWeight = secondWeight;
+    }
+
+    @Override
+    public void getRange(float[] box, float[] range)
+    {
+        float[] secondRange = new float[2];
+        first.getRange(box, range);
+        second.getRange(box, secondRange);
+        float firstLow = firstWeight * range[0];
+        float firstHigh = firstWeight * range[1];
+        float secondLow = secondWeight * secondRange[0];
+        float secondHigh = secondWeight * secondRange[1];
+        range[0] = Math.min(firstLow, firstHigh) + Math.min(secondLow, secondHigh);
+        range[1] = Math.max(firstLow, firstHigh) + Math.max(secondLow, secondHigh);
+    }
+
+    @Override
+    public void fill(Grid grid, float[] values, ModuleContext context)
+    {
+        int count = grid.getCount();
+        float[] secondValues = context.obtainBuffer(count);
+        first.fill(grid, values, context);
+        second.fill(grid, secondValues, context);
+        for (int i = 0; i < count; i++) {
+            values[i] = firstWeight * values[i] + secondWeight * secondValues[i];
+        }
+        context.recycleBuffer(secondValues);
+    }
+}
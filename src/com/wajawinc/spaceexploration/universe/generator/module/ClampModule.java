@@ -0,0 +1,41 @@
+package com.wajawinc.spaceexploration.universe.generator.module;
+
+/**
+ * Limits another module's values to a range.
+ */
+public class ClampModule
+    extends Module
+{
+    private final Module source;
+    private final float  min;
+    private final float  max;
+
+    /**
+     * @param source the module to clamp
+     * @param min the lowest value let through
+     * @param max the highest value let through
+     */
+    public ClampModule(Module source, float min, float max)
+    {
+        this.source = source;
+        this.min = min;
+        this.max = max;
+    }
+
+    @Override
+    public void getRange(float[] box, float[] range)
+    {
+        source.getRange(box, range);
+        range[0] = Math.min(Math.max(range[0], min), max);
+        range[1] = Math.min(Math.max(range[1], min), max);
+    }
+
+    @Override
+    public void fill(Grid grid, float[] values, ModuleContext context)
+    {
+        source.fill(grid, values, context);
+        for (int i = 0; i < grid.getCount(); i++) {
+            values[i] = Math.min(Math.max(values[i], min), max);
+        }
+    }
+}
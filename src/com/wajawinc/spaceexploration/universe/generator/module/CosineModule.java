@@ -0,0 +1,55 @@
+package com.wajawinc.spaceexploration.universe.generator.module;
+
+/**
+ * Maps another module's values through cos(v) * .5 + .5, which folds a
+ * smooth input into rolling bands between 0 and 1.
+ */
+public class CosineModule
+    extends Module
+{
+    private final Module source;
+
+    /**
+     * @param source the module to map
+     */
+    public CosineModule(Module source)
+    {
+        this.source = source;
+    }
+
+    @Override
+    public void getRange(float[] box, float[] range)
+    {
+        source.getRange(box, range);
+        double low = range[0];
+        double high = range[1];
+        double min = Math.min(Math.cos(low), Math.cos(high));
+        double max = Math.max(Math.cos(low), Math.cos(high));
+        //The extremes inside the range are at multiples of pi
+        double first = Math.ceil(low / Math.PI);
+        double last = Math.floor(high / Math.PI);
+        if (last - first >= 1) {
+            min = -1;
+            max = 1;
+        }
+        else if (last == first) {
+            if (first % 2 == 0) {
+                max = 1;
+            }
+            else {
+                min = -1;
+            }
+        }
+        range[0] = (float)min * 0.5f + 0.5f;
+        range[1] = (float)max * 0.5f + 0.5f;
+    }
+
+    @Override
+    public void fill(Grid grid, float[] values, ModuleContext context)
+    {
+        source.fill(grid, values, context);
+        for (int i = 0; i < grid.getCount(); i++) {
+            values[i] = (float)Math.cos(values[i]) * 0.5f + 0.5f;
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package com.wajawinc.spaceexploration.universe.generator.module;
+
+/**
+ * Sums octaves of another module, each at a higher frequency and a lower
+ * weight than the last, and divides by the total weight so the result
+ * stays in the source's range.
+ */
+public class FractalModule
+    extends Module
+{
+    private final Module source;
+    private final int    octaves;
+    private final float  lacunarity;
+    private final float  gain;
+
+    /**
+     * @param source the module to sum octaves of
+     * @param octaves the number of octaves
+     * @param lacunarity how much the frequency is multiplied by each octave
+     * @param gain how much the weight is multiplied by each octave
+     */
+    public FractalModule(Module source, int octaves, float lacunarity, float gain)
+    {
+        this.source = source;
+        this.octaves = octaves;
+        this.lacunarity = lacunarity;
+        this.gain = gain;
+    }
+
+    @Override
+    public void getRange(float[] box, float[] range)
+    {
+        float[] scaled = new float[6];
+        float[] octave = new float[2];
+        float frequency = 1;
+        float weight = 1;
+        float totalWeight = 0;
+        float low = 0;
+        float high = 0;
+        for (int o = 0; o < octaves; o++) {
+            for (int i = 0; i < 6; i++) {
+                scaled[i] = box[i] * frequency;
+            }
+            source.getRange(scaled, octave);
+            low += Math.min(octave[0] * weight, octave[1] * weight);
+            high += Math.max(octave[0] * weight, octave[1] * weight);
+            totalWeight += weight;
+            frequency *= lacunarity;
+            weight *= gain;
+        }
+        float scale = 1 / totalWeight;
+        range[0] = Math.min(low * scale, high * scale);
+        range[1] = Math.max(low * scale, high * scale);
+    }
+
+    @Override
+    public void fill(Grid grid, float[] values, ModuleContext context)
+    {
+        int count = grid.getCount();
+        Grid scaled = context.obtainGrid();
+        float[] octave = context.obtainBuffer(count);
+        float frequency = 1;
+        float weight = 1;
+        float totalWeight = 0;
+        for (int o = 0; o < octaves; o++) {
+            scaled.setScaled(grid, frequency);
+            source.fill(scaled, octave, context);
+            if (o == 0) {
+                for (int i = 0; i < count; i++) {
+                    values[i] = octave[i];
+                }
+            }
+            else {
+                for (int i = 0; i < count; i++) {
+                    values[i] += octave[i] * weight;
+                }
+            }
+            totalWeight += weight;
+            frequency *= lacunarity;
+            weight *= gain;
+        }
+        float scale = 1 / totalWeight;
+        for (int i = 0; i < count; i++) {
+            values[i] *= scale;
+        }
+        context.recycleBuffer(octave);
+        context.recycleGrid(scaled);
+    }
+}
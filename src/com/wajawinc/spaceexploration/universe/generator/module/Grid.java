@@ -0,0 +1,205 @@
+package com.wajawinc.spaceexploration.universe.generator.module;
+
+/**
+ * The points that a Module is evaluated at. Every grid lists the coordinates
+ * of each of its points; a grid made from a regular lattice also remembers
+ * the lattice, so that noise sources can fill it in one batched call.
+ */
+public class Grid
+{
+    private int     count;
+    private float[] x = new float[0];
+    private float[] y = new float[0];
+    private float[] z = new float[0];
+
+    private boolean regular;
+    private float   originX;
+    private float   originY;
+    private float   originZ;
+    private float   spacing;
+    private int     countX;
+    private int     countY;
+    private int     countZ;
+
+    /**
+     * Makes this the regular lattice at (originX + i * spacing, originY + j
+     * * spacing, originZ + k * spacing), with point (i, j, k) at index
+     * (i * countY + j) * countZ + k.
+     * @param originX the x coordinate of the first point
+     * @param originY the y coordinate of the first point
+     * @param originZ the z coordinate of the first point
+     * @param spacing the distance between neighbouring points
+     * @param countX the number of points along the x axis
+     * @param countY the number of points along the y axis
+     * @param countZ the number of points along the z axis
+     */
+    public void setRegular(float originX, float originY, float originZ, float spacing, int countX, int countY, int countZ)
+    {
+        resize(countX * countY * countZ);
+        regular = true;
+        this.originX = originX;
+        this.originY = originY;
+        this.originZ = originZ;
+        this.spacing = spacing;
+        this.countX = countX;
+        this.countY = countY;
+        this.countZ = countZ;
+        int i = 0;
+        for (int a = 0; a < countX; a++) {
+            for (int b = 0; b < countY; b++) {
+                for (int c = 0; c < countZ; c++, i++) {
+                    x[i] = originX + a * spacing;
+                    y[i] = originY + b * spacing;
+                    z[i] = originZ + c * spacing;
+                }
+            }
+        }
+    }
+
+    /**
+     * Makes this a copy of another grid with every coordinate multiplied by
+     * a scale. A scaled regular grid is still regular.
+     * @param grid the grid to scale
+     * @param scale the scale
+     */
+    public void setScaled(Grid grid, float scale)
+    {
+        if (grid.regular) {
+            setRegular(grid.originX * scale, grid.originY * scale, grid.originZ * scale, grid.spacing * scale, grid.countX, grid.countY, grid.countZ);
+            return;
+        }
+        resize(grid.count);
+        regular = false;
+        for (int i = 0; i < count; i++) {
+            x[i] = grid.x[i] * scale;
+            y[i] = grid.y[i] * scale;
+            z[i] = grid.z[i] * scale;
+        }
+    }
+
+    /**
+     * Makes this a copy of another grid with each point moved by an offset.
+     * The result is not regular.
+     * @param grid the grid to move
+     * @param offsetX the x offset of each point, in the grid's order
+     * @param offsetY the y offset of each point
+     * @param offsetZ the z offset of each point
+     * @param amount what the offsets are multiplied by
+     */
+    public void setOffset(Grid grid, float[] offsetX, float[] offsetY, float[] offsetZ, float amount)
+    {
+        resize(grid.count);
+        regular = false;
+        for (int i = 0; i < count; i++) {
+            x[i] = grid.x[i] + offsetX[i] * amount;
+            y[i] = grid.y[i] + offsetY[i] * amount;
+            z[i] = grid.z[i] + offsetZ[i] * amount;
+        }
+    }
+
+    /**
+     * Makes this a copy of some of the points of another grid. The result is
+     * not regular.
+     * @param grid the grid to take the points from
+     * @param indices the index in grid of each point to take, in the order
+     * they will have here
+     * @param count the number of points to take
+     */
+    public void setPoints(Grid grid, int[] indices, int count)
+    {
+        resize(count);
+        regular = false;
+        for (int i = 0; i < count; i++) {
+            x[i] = grid.x[indices[i]];
+            y[i] = grid.y[indices[i]];
+            z[i] = grid.z[indices[i]];
+        }
+    }
+
+    private void resize(int newCount)
+    {
+        count = newCount;
+        if (x.length < count) {
+            x = new float[count];
+            y = new float[count];
+            z = new float[count];
+        }
+    }
+
+    /**
+     * @return the number of points
+     */
+    public int getCount()
+    {
+        return count;
+    }
+
+    /**
+     * @return the x coordinate of each point; only the first getCount()
+     * entries are used
+     */
+    public float[] getX()
+    {
+        return x;
+    }
+
+    /**
+     * @return the y coordinate of each point
+     */
+    public float[] getY()
+    {
+        return y;
+    }
+
+    /**
+     * @return the z coordinate of each point
+     */
+    public float[] getZ()
+    {
+        return z;
+    }
+
+    /**
+     * @return true if the points are a regular lattice, described by the
+     * origin, spacing and count getters
+     */
+    public boolean isRegular()
+    {
+        return regular;
+    }
+
+    public float getOriginX()
+    {
+        return originX;
+    }
+
+    public float getOriginY()
+    {
+        return originY;
+    }
+
+    public float getOriginZ()
+    {
+        return originZ;
+    }
+
+    public float getSpacing()
+    {
+        return spacing;
+    }
+
+    public int getCountX()
+    {
+        return countX;
+    }
+
+    public int getCountY()
+    {
+        return countY;
+    }
+
+    public int getCountZ()
+    {
+        return countZ;
+    }
+}
@@ -0,0 +1,28 @@
+package com.wajawinc.spaceexploration.universe.generator.module;
+
+/**
+ * A node in a graph of terrain functions. Rather than being asked for one
+ * point at a time, a module fills the values of a whole grid in one call,
+ * so each module costs one virtual call per chunk instead of one per
+ * voxel, and its inner loops run over plain float arrays.
+ */
+public abstract class Module
+{
+    /**
+     * Works out this module's value at every point of a grid.
+     * @param grid the points
+     * @param values receives the value of point i at index i
+     * @param context scratch space for intermediate results
+     */
+    public abstract void fill(Grid grid, float[] values, ModuleContext context);
+
+    /**
+     * Finds bounds on this module's values over a box. They need not be
+     * tight, but every value that fill could give for a point in the box
+     * must lie within them, so that generators can rule out a surface
+     * without sampling.
+     * @param box the box, as its lowest x, y and z followed by its highest
+     * @param range receives the lowest value at 0 and the highest at 1
+     */
+    public abstract void getRange(float[] box, float[] range);
+}
@@ -0,0 +1,61 @@
+package com.wajawinc.spaceexploration.universe.generator.module;
+
+import java.util.ArrayList;
+
+/**
+ * The scratch space that a module graph is evaluated with. Modules borrow
+ * buffers and grids for their intermediate results and give them back when
+ * they are done, so evaluating a graph again allocates nothing once the
+ * context has grown to the graph's depth. A context belongs to one thread
+ * at a time.
+ */
+public class ModuleContext
+{
+    private final ArrayList<float[]> buffers = new ArrayList<float[]>();
+    private final ArrayList<Grid>    grids = new ArrayList<Grid>();
+
+    /**
+     * Borrows a buffer.
+     * @param size the number of values needed
+     * @return a buffer of at least that many values, with any contents
+     */
+    public float[] obtainBuffer(int size)
+    {
+        for (int i = buffers.size() - 1; i >= 0; i--) {
+            if (buffers.get(i).length >= size) {
+                return buffers.remove(i);
+            }
+        }
+        return new float[size];
+    }
+
+    /**
+     * Gives back a buffer from obtainBuffer.
+     * @param buffer the buffer
+     */
+    public void recycleBuffer(float[] buffer)
+    {
+        buffers.add(buffer);
+    }
+
+    /**
+     * Borrows a grid.
+     * @return a grid with any contents
+     */
+    public Grid obtainGrid()
+    {
+        if (grids.isEmpty()) {
+            return new Grid();
+        }
+        return grids.remove(grids.size() - 1);
+    }
+
+    /**
+     * Gives back a grid from obtainGrid.
+     * @param grid the grid
+     */
+    public void recycleGrid(Grid grid)
+    {
+        grids.add(grid);
+    }
+}
@@ -0,0 +1,48 @@
+package com.wajawinc.spaceexploration.universe.generator.module;
+
+/**
+ * The distance of each point from the center of the planet, divided by a
+ * radius and capped at 1. It gives planets their roughly round shape.
+ */
+public class RadialFalloffModule
+    extends Module
+{
+    private final float radius;
+
+    /**
+     * @param radius the distance at which the falloff reaches 1
+     */
+    public RadialFalloffModule(float radius)
+    {
+        this.radius = radius;
+    }
+
+    @Override
+    public void getRange(float[] box, float[] range)
+    {
+        float nearest = 0;
+        float farthest = 0;
+        for (int i = 0; i < 3; i++) {
+            float low = box[i];
+            float high = box[i + 3];
+            float near = Math.max(low, Math.min(0, high));
+            float far = Math.max(Math.abs(low), Math.abs(high));
+            nearest += near * near;
+            farthest += far * far;
+        }
+        range[0] = Math.min((float)Math.sqrt(nearest) / radius, 1);
+        range[1] = Math.min((float)Math.sqrt(farthest) / radius, 1);
+    }
+
+    @Override
+    public void fill(Grid grid, float[] values, ModuleContext context)
+    {
+        float[] x = grid.getX();
+        float[] y = grid.getY();
+        float[] z = grid.getZ();
+        for (int i = 0; i < grid.getCount(); i++) {
+            float dist = (float)Math.sqrt(x[i] * x[i] + y[i] * y[i] + z[i] * z[i]) / radius;
+            values[i] = dist > 1 ? 1 : dist;
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package com.wajawinc.spaceexploration.universe.generator.module;
+
+/**
+ * Multiplies another module's values by a scale and adds a bias.
+ */
+public class ScaleBiasModule
+    extends Module
+{
+    private final Module source;
+    private final float  scale;
+    private final float  bias;
+
+    /**
+     * @param source the module to transform
+     * @param scale what each value is multiplied by
+     * @param bias what is then added
+     */
+    public ScaleBiasModule(Module source, float scale, float bias)
+    {
+        this.source = source;
+        this.scale = scale;
+        this.bias = bias;
+    }
+
+    @Override
+    public void getRange(float[] box, float[] range)
+    {
+        source.getRange(box, range);
+        float low = bias + scale * range[0];
+        float high = bias + scale * range[1];
+        range[0] = Math.min(low, high);
+        range[1] = Math.max(low, high);
+    }
+
+    @Override
+    public void fill(Grid grid, float[] values, ModuleContext context)
+    {
+        source.fill(grid, values, context);
+        for (int i = 0; i < grid.getCount(); i++) {
+            values[i] = bias + scale * values[i];
+        }
+    }
+}
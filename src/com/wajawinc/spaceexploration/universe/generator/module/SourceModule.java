@@ -0,0 +1,43 @@
+package com.wajawinc.spaceexploration.universe.generator.module;
+
+import com.wajawinc.spaceexploration.universe.generator.NoiseSource;
+
+/**
+ * Samples a NoiseSource. Regular grids are filled with the source's batched
+ * getNoiseValues.
+ */
+public class SourceModule
+    extends Module
+{
+    private final NoiseSource source;
+
+    /**
+     * @param source the noise to sample
+     */
+    public SourceModule(NoiseSource source)
+    {
+        this.source = source;
+    }
+
+    @Override
+    public void getRange(float[] box, float[] range)
+    {
+        range[0] = 0;
+        range[1] = 1;
+    }
+
+    @Override
+    public void fill(Grid grid, float[] values, ModuleContext context)
+    {
+        if (grid.isRegular()) {
+            source.getNoiseValues(values, grid.getOriginX(), grid.getOriginY(), grid.getOriginZ(), grid.getSpacing(), grid.getCountX(), grid.getCountY(), grid.getCountZ());
+            return;
+        }
+        float[] x = grid.getX();
+        float[] y = grid.getY();
+        float[] z = grid.getZ();
+        for (int i = 0; i < grid.getCount(); i++) {
+            values[i] = source.getNoiseValue(x[i], y[i], z[i]);
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package com.wajawinc.spaceexploration.universe.generator.module;
+
+/**
+ * Evaluates another module at points pushed around by three offset modules,
+ * which bends the source's features into swirls and overhangs.
+ */
+public class WarpModule
+    extends Module
+{
+    private final Module source;
+    private final Module offsetX;
+    private final Module offsetY;
+    private final Module offsetZ;
+    private final float  amount;
+
+    /**
+     * @param source the module to warp
+     * @param offsetX gives how far each point moves along x
+     * @param offsetY gives how far each point moves along y
+     * @param offsetZ gives how far each point moves along z
+     * @param amount what the offsets are multiplied by
+     */
+    public WarpModule(Module source, Module offsetX, Module offsetY, Module offsetZ, float amount)
+    {
+        this.source = source;
+        this.offsetX = offsetX;
+        this.offsetY = offsetY;
+        this.offsetZ = offsetZ;
+        this.amount = amount;
+    }
+
+    @Override
+    public void getRange(float[] box, float[] range)
+    {
+        //Every point the source is sampled at is within the box grown by
+        //the largest offsets
+        float[] warped = new float[6];
+        Module[] offsets = { offsetX, offsetY, offsetZ };
+        for (int i = 0; i < 3; i++) {
+            offsets[i].getRange(box, range);
+            float low = range[0] * amount;
+            float high = range[1] * amount;
+            warped[i] = box[i] + Math.min(low, high);
+            warped[i + 3] = box[i + 3] + Math.max(low, high);
+        }
+        source.getRange(warped, range);
+    }
+
+    @Override
+    public void fill(Grid grid, float[] values, ModuleContext context)
+    {
+        int count = grid.getCount();
+        float[] x = context.obtainBuffer(count);
+        float[] y = context.obtainBuffer(count);
+        float[] z = context.obtainBuffer(count);
+        offsetX.fill(grid, x, context);
+        offsetY.fill(grid, y, context);
+        offsetZ.fill(grid, z, context);
+        Grid warped = context.obtainGrid();
+        warped.setOffset(grid, x, y, z, amount);
+        context.recycleBuffer(z);
+        context.recycleBuffer(y);
+        context.recycleBuffer(x);
+        source.fill(warped, values, context);
+        context.recycleGrid(warped);
+    }
+}
@@ -0,0 +1,17 @@
+package com.wajawinc.spaceexploration.util;
+
+import android.util.Log;
+
+// -------------------------------------------------------------------------
+/**
+ * The default DebugLog, which passes messages on to android.util.Log.
+ */
+class AndroidDebugLog
+    extends DebugLog
+{
+    @Override
+    public void debug(String tag, String message)
+    {
+        Log.d(tag, message);
+    }
+}
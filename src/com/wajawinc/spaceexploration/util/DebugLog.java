@@ -0,0 +1,80 @@
+package com.wajawinc.spaceexploration.util;
+
+// -------------------------------------------------------------------------
+/**
+ * Where the engine's debug messages go. The terrain and tessellation code
+ * logs through this rather than android.util.Log so that it can run on a
+ * plain JVM, as the benchmarks do. Messages go to android.util.Log until
+ * another DebugLog is installed with set().
+ */
+public abstract class DebugLog
+{
+    /**
+     * A DebugLog that drops every message.
+     */
+    public static final DebugLog SILENT = new DebugLog() {
+        @Override
+        public void debug(String tag, String message)
+        {
+            // Discarded
+        }
+    };
+
+    private static volatile DebugLog current;
+
+
+    /**
+     * Logs a debug message through the installed DebugLog.
+     *
+     * @param tag
+     *            identifies where the message came from.
+     * @param message
+     *            the message.
+     */
+    public static void d(String tag, String message)
+    {
+        get().debug(tag, message);
+    }
+
+
+    /**
+     * Installs the DebugLog that messages go to from now on.
+     *
+     * @param log
+     *            the new DebugLog, or null to go back to android.util.Log.
+     */
+    public static void set(DebugLog log)
+    {
+        current = log;
+    }
+
+
+    /**
+     * Gets the installed DebugLog.
+     *
+     * @return the DebugLog that messages go to.
+     */
+    public static DebugLog get()
+    {
+        DebugLog log = current;
+        if (log == null)
+        {
+            // Only made on first use, so android.util.Log is never loaded
+            // when another DebugLog is installed first.
+            log = new AndroidDebugLog();
+            current = log;
+        }
+        return log;
+    }
+
+
+    /**
+     * Writes a debug message.
+     *
+     * @param tag
+     *            identifies where the message came from.
+     * @param message
+     *            the message.
+     */
+    public abstract void debug(String tag, String message);
+}